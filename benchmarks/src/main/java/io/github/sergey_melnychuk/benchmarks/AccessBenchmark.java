@@ -0,0 +1,62 @@
+package io.github.sergey_melnychuk.benchmarks;
+
+import io.github.sergey_melnychuk.Argumentz;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessBenchmark {
+
+    @Param({"5", "100", "10000"})
+    int size;
+
+    Argumentz.Match match;
+    String stringName;
+    String intName;
+    String flagName;
+
+    @Setup
+    public void setup() {
+        match = Specs.build(size).match(Specs.full(size));
+        stringName = Specs.name(Specs.last(size, 0));
+        intName = Specs.name(Specs.last(size, 1));
+        flagName = Specs.name(Specs.last(size, 3));
+    }
+
+    @Benchmark
+    public String get() {
+        return match.get(stringName);
+    }
+
+    @Benchmark
+    public Integer getInt() {
+        return match.getInt(intName);
+    }
+
+    @Benchmark
+    public int getIntValue() {
+        return match.getIntValue(intName);
+    }
+
+    @Benchmark
+    public Integer getAs() {
+        return match.getAs(Integer.class, intName);
+    }
+
+    @Benchmark
+    public boolean getFlag() {
+        return match.getFlag(flagName);
+    }
+
+    @Benchmark
+    public Map<String, Object> all() {
+        return match.all();
+    }
+}
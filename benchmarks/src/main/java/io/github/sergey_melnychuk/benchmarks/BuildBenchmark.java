@@ -0,0 +1,23 @@
+package io.github.sergey_melnychuk.benchmarks;
+
+import io.github.sergey_melnychuk.Argumentz;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuildBenchmark {
+
+    @Param({"5", "100", "10000"})
+    int size;
+
+    @Benchmark
+    public Argumentz build() {
+        return Specs.build(size);
+    }
+}
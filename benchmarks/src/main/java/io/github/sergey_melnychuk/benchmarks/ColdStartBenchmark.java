@@ -0,0 +1,38 @@
+package io.github.sergey_melnychuk.benchmarks;
+
+import io.github.sergey_melnychuk.Argumentz;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of the very first parse in a fresh JVM: runtime builder versus parser generated from {@link ColdStartConfig}.
+ * Each measurement is a single shot in its own fork, so class loading and lambda linkage are included.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class ColdStartBenchmark {
+    private static final String[] ARGS = {"-u", "admin", "-p", "9000", "-s", "3600", "-h", "localhost", "-v"};
+
+    @Benchmark
+    public int argumentz() {
+        Argumentz.Match match = Argumentz.builder()
+                .withParam('u', "user", "username to connect to the server", () -> "guest")
+                .withIntParam('p', "port", "port for server to listen", 8080)
+                .withIntParam('s', "seconds", "timeout in seconds")
+                .withParam('h', "host", "host for client to connect to")
+                .withFlag('v', "verbose", "enable extra logging")
+                .build()
+                .match(ARGS);
+        return match.getIntValue("port") + match.getIntValue("seconds") + match.get("user").length();
+    }
+
+    @Benchmark
+    public int generated() {
+        ColdStartConfig config = new ColdStartConfigParser().parse(ARGS);
+        return config.port + config.seconds + config.user.length();
+    }
+}
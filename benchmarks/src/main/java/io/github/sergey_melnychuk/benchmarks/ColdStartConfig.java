@@ -0,0 +1,20 @@
+package io.github.sergey_melnychuk.benchmarks;
+
+import io.github.sergey_melnychuk.processor.Option;
+
+public class ColdStartConfig {
+    @Option(chr = 'u', name = "user", desc = "username to connect to the server", defaultValue = "guest")
+    String user;
+
+    @Option(chr = 'p', name = "port", desc = "port for server to listen", defaultValue = "8080")
+    int port;
+
+    @Option(chr = 's', name = "seconds", desc = "timeout in seconds")
+    int seconds;
+
+    @Option(chr = 'h', name = "host", desc = "host for client to connect to")
+    String host;
+
+    @Option(chr = 'v', name = "verbose", desc = "enable extra logging")
+    boolean verbose;
+}
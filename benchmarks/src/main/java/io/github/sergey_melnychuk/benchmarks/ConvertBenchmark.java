@@ -0,0 +1,100 @@
+package io.github.sergey_melnychuk.benchmarks;
+
+import io.github.sergey_melnychuk.Conversion;
+import io.github.sergey_melnychuk.Converters;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Built-in converters against the JDK parsers they replace, on valid and on invalid input
+ * (where the JDK parsers throw and the converters return an error result).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertBenchmark {
+
+    @Param({"valid", "invalid"})
+    String input;
+
+    String intText;
+    String longText;
+    String doubleText;
+    String durationText;
+    String isoDurationText;
+
+    @Setup
+    public void setup() {
+        boolean valid = input.equals("valid");
+        intText = valid ? "8080" : "http";
+        longText = valid ? "4294967296" : "4294967296L";
+        doubleText = valid ? "0.25" : "0.25f0";
+        durationText = valid ? "250ms" : "250 ms";
+        isoDurationText = valid ? "PT0.25S" : "PT0.25 S";
+    }
+
+    @Benchmark
+    public Object jdkInt() {
+        try {
+            return Integer.parseInt(intText);
+        } catch (NumberFormatException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object convertInt() {
+        Conversion<Integer> conversion = Converters.INT.convert(intText);
+        return conversion.isValid() ? conversion.value() : conversion.error();
+    }
+
+    @Benchmark
+    public Object jdkLong() {
+        try {
+            return Long.parseLong(longText);
+        } catch (NumberFormatException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object convertLong() {
+        Conversion<Long> conversion = Converters.LONG.convert(longText);
+        return conversion.isValid() ? conversion.value() : conversion.error();
+    }
+
+    @Benchmark
+    public Object jdkDouble() {
+        try {
+            return Double.parseDouble(doubleText);
+        } catch (NumberFormatException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object convertDouble() {
+        Conversion<Double> conversion = Converters.DOUBLE.convert(doubleText);
+        return conversion.isValid() ? conversion.value() : conversion.error();
+    }
+
+    @Benchmark
+    public Object jdkDuration() {
+        try {
+            return Duration.parse(isoDurationText);
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object convertDuration() {
+        Conversion<Duration> conversion = Converters.DURATION.convert(durationText);
+        return conversion.isValid() ? conversion.value() : conversion.error();
+    }
+}
@@ -0,0 +1,25 @@
+package io.github.sergey_melnychuk.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Same as the stock JMH entry point, but always attaches the GC profiler,
+ * so that every run reports allocation rate and bytes per operation.
+ */
+public class Main {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListProfilers()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        new Runner(new OptionsBuilder()
+                .parent(cmd)
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
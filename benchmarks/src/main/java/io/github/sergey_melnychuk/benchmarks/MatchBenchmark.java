@@ -0,0 +1,79 @@
+package io.github.sergey_melnychuk.benchmarks;
+
+import io.github.sergey_melnychuk.Argumentz;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchBenchmark {
+
+    @Param({"5", "100", "10000"})
+    int size;
+
+    Argumentz argumentz;
+    String[] full;
+    String[] required;
+    String[] failing;
+    String line;
+    Argumentz.MutableMatch reused;
+
+    @Setup
+    public void setup() {
+        argumentz = Specs.build(size);
+        full = Specs.full(size);
+        required = Specs.required(size);
+        failing = Specs.failing(size);
+        line = String.join(" ", full);
+        reused = argumentz.newMatch();
+    }
+
+    @Benchmark
+    public Argumentz.Match valid() {
+        return argumentz.match(full);
+    }
+
+    @Benchmark
+    public Argumentz.Match validReused() {
+        return argumentz.match(full, reused);
+    }
+
+    @Benchmark
+    public Argumentz.Match validLine() {
+        return argumentz.match(line);
+    }
+
+    @Benchmark
+    public Argumentz.Match defaults() {
+        return argumentz.match(required);
+    }
+
+    @Benchmark
+    public Object failing() {
+        try {
+            return argumentz.match(failing);
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object validate() {
+        return argumentz.validate(full);
+    }
+
+    @Benchmark
+    public Object validateFailing() {
+        return argumentz.validate(failing);
+    }
+
+    @Benchmark
+    public Argumentz.Report checkFailing() {
+        return argumentz.check(failing);
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.sergey_melnychuk.benchmarks;
+
+import io.github.sergey_melnychuk.Argumentz;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic specs of a given size. Options cycle through four kinds: string param with default,
+ * integer param with default, required integer param and flag.
+ */
+final class Specs {
+    private Specs() {}
+
+    static char chr(int i) {
+        // CJK block gives more than enough distinct single-char names for the largest spec
+        return (char) (0x4E00 + i);
+    }
+
+    static String name(int i) {
+        return "opt" + i;
+    }
+
+    static boolean isFlag(int i) {
+        return i % 4 == 3;
+    }
+
+    static boolean isRequired(int i) {
+        return i % 4 == 2;
+    }
+
+    static boolean isInt(int i) {
+        return i % 4 == 1 || i % 4 == 2;
+    }
+
+    static Argumentz.Builder builder(int size) {
+        Argumentz.Builder builder = Argumentz.builder();
+        for (int i = 0; i < size; i++) {
+            char chr = chr(i);
+            String name = name(i);
+            String desc = "description of option " + i;
+            switch (i % 4) {
+                case 0:
+                    String value = "value" + i;
+                    builder.withParam(chr, name, desc, () -> value);
+                    break;
+                case 1:
+                    int number = i;
+                    builder.withParam(chr, name, desc, Integer::parseInt, () -> number);
+                    break;
+                case 2:
+                    builder.withParam(chr, name, desc, Integer::parseInt);
+                    break;
+                default:
+                    builder.withFlag(chr, name, desc);
+            }
+        }
+        return builder;
+    }
+
+    static Argumentz build(int size) {
+        return builder(size).build();
+    }
+
+    /**
+     * Every option present, alternating short and long names.
+     */
+    static String[] full(int size) {
+        List<String> args = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            args.add(i % 2 == 0 ? "-" + chr(i) : "--" + name(i));
+            if (!isFlag(i)) {
+                args.add(isInt(i) ? Integer.toString(i * 31) : "arg" + i);
+            }
+        }
+        return args.toArray(new String[0]);
+    }
+
+    /**
+     * Only required options present, everything else resolves to defaults.
+     */
+    static String[] required(int size) {
+        List<String> args = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (isRequired(i)) {
+                args.add("--" + name(i));
+                args.add(Integer.toString(i));
+            }
+        }
+        return args.toArray(new String[0]);
+    }
+
+    /**
+     * Last required option is missing, so matching always fails.
+     */
+    static String[] failing(int size) {
+        String[] args = required(size);
+        String[] truncated = new String[Math.max(0, args.length - 2)];
+        System.arraycopy(args, 0, truncated, 0, truncated.length);
+        return truncated;
+    }
+
+    /**
+     * Last index of an option of the given kind, so lookups do not hit the first bucket.
+     */
+    static int last(int size, int kind) {
+        int i = size - 1;
+        while (i % 4 != kind) {
+            i--;
+        }
+        return i;
+    }
+}
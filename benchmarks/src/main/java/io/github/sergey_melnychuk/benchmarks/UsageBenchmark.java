@@ -0,0 +1,42 @@
+package io.github.sergey_melnychuk.benchmarks;
+
+import io.github.sergey_melnychuk.Argumentz;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UsageBenchmark {
+
+    @Param({"5", "100", "10000"})
+    int size;
+
+    Argumentz argumentz;
+    PrintStream sink;
+
+    @Setup
+    public void setup() {
+        argumentz = Specs.build(size);
+        sink = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+
+    @Benchmark
+    public void printUsage() {
+        argumentz.printUsage(sink);
+    }
+}
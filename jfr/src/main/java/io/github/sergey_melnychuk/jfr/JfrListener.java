@@ -0,0 +1,109 @@
+package io.github.sergey_melnychuk.jfr;
+
+import io.github.sergey_melnychuk.Argumentz;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Listener that emits JDK Flight Recorder events for matches, mappers, default suppliers and errors.
+ * Events are disabled by default in JFR settings until enabled, and when they are disabled (or there
+ * is no recording) every callback costs about as much as a field read.
+ *
+ * <pre>
+ * Argumentz argumentz = Argumentz.builder()
+ *         ...
+ *         .withListener(new JfrListener())
+ *         .build();
+ * </pre>
+ */
+public final class JfrListener implements Argumentz.Listener {
+
+    @Override
+    public void matchFinished(long nanos, boolean success) {
+        MatchEvent event = new MatchEvent();
+        if (event.isEnabled()) {
+            event.elapsed = nanos;
+            event.success = success;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void mapped(String name, long nanos) {
+        resolved(name, "mapper", nanos);
+    }
+
+    @Override
+    public void defaulted(String name, long nanos) {
+        resolved(name, "default", nanos);
+    }
+
+    private static void resolved(String name, String kind, long nanos) {
+        ResolveEvent event = new ResolveEvent();
+        if (event.isEnabled()) {
+            event.option = name;
+            event.kind = kind;
+            event.elapsed = nanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void failed(RuntimeException error) {
+        ErrorEvent event = new ErrorEvent();
+        if (event.isEnabled()) {
+            event.message = error.getMessage();
+            event.commit();
+        }
+    }
+
+    @Name(MatchEvent.NAME)
+    @Label("Argumentz Match")
+    @Category("Argumentz")
+    @StackTrace(false)
+    static final class MatchEvent extends Event {
+        static final String NAME = "io.github.sergey_melnychuk.Match";
+
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name(ResolveEvent.NAME)
+    @Label("Argumentz Resolve")
+    @Description("Time spent in a mapper or a default value supplier of an option")
+    @Category("Argumentz")
+    @StackTrace(false)
+    static final class ResolveEvent extends Event {
+        static final String NAME = "io.github.sergey_melnychuk.Resolve";
+
+        @Label("Option")
+        String option;
+
+        @Label("Kind")
+        String kind;
+
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    @Name(ErrorEvent.NAME)
+    @Label("Argumentz Error")
+    @Description("Error passed to the error handler")
+    @Category("Argumentz")
+    static final class ErrorEvent extends Event {
+        static final String NAME = "io.github.sergey_melnychuk.Error";
+
+        @Label("Message")
+        String message;
+    }
+}
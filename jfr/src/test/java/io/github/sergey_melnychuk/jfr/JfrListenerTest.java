@@ -0,0 +1,60 @@
+package io.github.sergey_melnychuk.jfr;
+
+import io.github.sergey_melnychuk.Argumentz;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class JfrListenerTest {
+
+    @Test
+    void testEventsAreRecorded() throws Exception {
+        Argumentz argumentz = Argumentz.builder()
+                .withParam('u', "user", "username to connect to the server", () -> "guest")
+                .withParam('p', "port", "port for server to listen", Integer::parseInt, () -> 8080)
+                .withListener(new JfrListener())
+                .build();
+
+        Path file = Files.createTempFile("argumentz", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(JfrListener.MatchEvent.NAME);
+            recording.enable(JfrListener.ResolveEvent.NAME);
+            recording.enable(JfrListener.ErrorEvent.NAME);
+            recording.start();
+
+            argumentz.match(new String[]{"-p", "80"});
+            assertThatThrownBy(() -> argumentz.match(new String[]{"-p", "http"}))
+                    .isInstanceOf(IllegalArgumentException.class);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        assertThat(names(events, JfrListener.MatchEvent.NAME, "success"))
+                .containsExactly("true", "false");
+        assertThat(names(events, JfrListener.ResolveEvent.NAME, "option"))
+                .containsExactly("port", "user", "port");
+        assertThat(names(events, JfrListener.ErrorEvent.NAME, "message"))
+                .containsExactly("Failed to resolve parameter: \"-p\" / \"--port\": For input string: \"http\"");
+    }
+
+    private static List<String> names(List<RecordedEvent> events, String type, String field) {
+        return events.stream()
+                .filter(e -> e.getEventType().getName().equals(type))
+                .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
+                .map(e -> String.valueOf((Object) e.getValue(field)))
+                .collect(Collectors.toList());
+    }
+}
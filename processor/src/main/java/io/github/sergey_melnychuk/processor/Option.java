@@ -0,0 +1,34 @@
+package io.github.sergey_melnychuk.processor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field of a config class as a command-line option. For every class with such fields,
+ * {@link OptionProcessor} generates {@code <ClassName>Parser} in the same package.
+ * <p>
+ * Field of type {@code boolean} is a flag. Fields of types {@code String}, {@code int}, {@code long},
+ * {@code double} (or their boxed counterparts) are params, required unless {@link #defaultValue()} is set.
+ * Fields must not be private or final, and the class must have a no-arg constructor.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface Option {
+    /**
+     * Value of {@link #defaultValue()} that marks the param as required.
+     */
+    String REQUIRED = "\u0000";
+
+    char chr();
+
+    String name();
+
+    String desc() default "";
+
+    /**
+     * Default value in the same form as it would be given on the command line, checked at compile time.
+     */
+    String defaultValue() default REQUIRED;
+}
@@ -0,0 +1,498 @@
+package io.github.sergey_melnychuk.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates {@code <ClassName>Parser} for every class with {@link Option} fields. The generated parser
+ * behaves like {@code Argumentz} built with the same options: same token rules, defaults, error messages,
+ * usage text and error handler contract. It is written without reflection, lambdas or maps: tokens are
+ * dispatched by a string {@code switch} (and short names within {@code -abc} clusters by a char {@code switch}),
+ * values are assigned straight to the typed fields, and the usage text is a compile-time constant.
+ * Like {@code Argumentz}, it splits {@code --name=value}, {@code -pVALUE} and clusters of short options.
+ */
+@SupportedAnnotationTypes("io.github.sergey_melnychuk.processor.Option")
+public class OptionProcessor extends AbstractProcessor {
+
+    private enum Kind {
+        FLAG, STRING, INT, LONG, DOUBLE
+    }
+
+    private static final class Field {
+        private final String field;
+        private final char chr;
+        private final String name;
+        private final String desc;
+        private final Kind kind;
+        private final String defaultValue;
+
+        private Field(String field, char chr, String name, String desc, Kind kind, String defaultValue) {
+            this.field = field;
+            this.chr = chr;
+            this.name = name;
+            this.desc = desc;
+            this.kind = kind;
+            this.defaultValue = defaultValue;
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Map<TypeElement, List<Field>> classes = new LinkedHashMap<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(Option.class)) {
+            TypeElement owner = (TypeElement) element.getEnclosingElement();
+            Field field = field((VariableElement) element);
+            if (field != null) {
+                classes.computeIfAbsent(owner, k -> new ArrayList<>()).add(field);
+            }
+        }
+
+        for (Map.Entry<TypeElement, List<Field>> entry : classes.entrySet()) {
+            TypeElement owner = entry.getKey();
+            List<Field> fields = entry.getValue();
+            fields.sort(Comparator.comparingInt(f -> indexOf(owner, f.field)));
+            if (validate(owner, fields)) {
+                generate(owner, fields);
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(TypeElement owner, String field) {
+        List<? extends Element> members = owner.getEnclosedElements();
+        for (int i = 0; i < members.size(); i++) {
+            if (members.get(i).getSimpleName().contentEquals(field)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Field field(VariableElement element) {
+        Option option = element.getAnnotation(Option.class);
+        Set<Modifier> modifiers = element.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)
+                || modifiers.contains(Modifier.STATIC)) {
+            error(element, "@Option field must not be private, final or static");
+            return null;
+        }
+
+        Kind kind = kind(element.asType());
+        if (kind == null) {
+            error(element, "@Option field type must be boolean, String, int, long or double, but was " +
+                    element.asType());
+            return null;
+        }
+
+        String defaultValue = Option.REQUIRED.equals(option.defaultValue()) ? null : option.defaultValue();
+        if (kind == Kind.FLAG && defaultValue != null) {
+            error(element, "@Option flag cannot have a default value");
+            return null;
+        }
+        if (defaultValue != null) {
+            try {
+                parse(kind, defaultValue);
+            } catch (IllegalArgumentException e) {
+                error(element, "@Option default value \"" + defaultValue + "\" is invalid: " + e.getMessage());
+                return null;
+            }
+        }
+
+        return new Field(element.getSimpleName().toString(),
+                option.chr(), option.name(), option.desc(), kind, defaultValue);
+    }
+
+    private static Kind kind(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return Kind.FLAG;
+            case INT:
+                return Kind.INT;
+            case LONG:
+                return Kind.LONG;
+            case DOUBLE:
+                return Kind.DOUBLE;
+            case DECLARED:
+                break;
+            default:
+                return null;
+        }
+        switch (type.toString()) {
+            case "java.lang.String":
+                return Kind.STRING;
+            case "java.lang.Integer":
+                return Kind.INT;
+            case "java.lang.Long":
+                return Kind.LONG;
+            case "java.lang.Double":
+                return Kind.DOUBLE;
+            default:
+                return null;
+        }
+    }
+
+    private static Object parse(Kind kind, String value) {
+        switch (kind) {
+            case INT:
+                return Integer.parseInt(value);
+            case LONG:
+                return Long.parseLong(value);
+            case DOUBLE:
+                return Double.parseDouble(value);
+            default:
+                return value;
+        }
+    }
+
+    private boolean validate(TypeElement owner, List<Field> fields) {
+        boolean constructor = false;
+        for (Element member : owner.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.CONSTRUCTOR
+                    && ((ExecutableElement) member).getParameters().isEmpty()
+                    && !member.getModifiers().contains(Modifier.PRIVATE)) {
+                constructor = true;
+            }
+        }
+        if (!constructor) {
+            error(owner, "Class with @Option fields must have a non-private no-arg constructor");
+            return false;
+        }
+        if (owner.getNestingKind() != NestingKind.TOP_LEVEL && !owner.getModifiers().contains(Modifier.STATIC)) {
+            error(owner, "Class with @Option fields must be top-level or static nested");
+            return false;
+        }
+
+        Set<String> keys = new HashSet<>();
+        for (Field field : fields) {
+            for (String key : Arrays.asList("-" + field.chr, "--" + field.name)) {
+                if (!keys.add(key)) {
+                    error(owner, "Duplicate option \"" + key + "\"");
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement owner, List<Field> fields) {
+        String pkg = processingEnv.getElementUtils().getPackageOf(owner).getQualifiedName().toString();
+        String config = owner.getQualifiedName().toString();
+        String parser = parserName(owner);
+
+        StringBuilder out = new StringBuilder();
+        if (!pkg.isEmpty()) {
+            out.append("package ").append(pkg).append(";\n\n");
+        }
+        out.append("import java.io.PrintStream;\n");
+        out.append("import java.util.function.BiConsumer;\n\n");
+        out.append("/**\n * Generated from {@link ").append(config).append("}.\n */\n");
+        out.append("public final class ").append(parser).append(" {\n");
+        out.append("    private static final String USAGE = ").append(usage(fields)).append(";\n");
+        out.append("    private static final boolean[] FLAGS = {");
+        for (int k = 0; k < fields.size(); k++) {
+            out.append(k == 0 ? "" : ", ").append(fields.get(k).kind == Kind.FLAG);
+        }
+        out.append("};\n\n");
+        out.append("    private final BiConsumer<RuntimeException, ").append(parser).append("> errorHandler;\n");
+        out.append("    private final ThreadLocal<Boolean> parsing = new ThreadLocal<>();\n\n");
+
+        out.append("    public ").append(parser).append("() {\n");
+        out.append("        this(new Rethrow());\n");
+        out.append("    }\n\n");
+
+        out.append("    public ").append(parser).append("(BiConsumer<RuntimeException, ").append(parser)
+                .append("> errorHandler) {\n");
+        out.append("        this.errorHandler = errorHandler;\n");
+        out.append("    }\n\n");
+
+        out.append("    public ").append(config).append(" parse(String[] args) {\n");
+        out.append("        if (parsing.get() != null) {\n");
+        out.append("            throw new IllegalStateException(\"Infinite recursive call to ").append(parser)
+                .append(".parse detected.\");\n");
+        out.append("        }\n");
+        out.append("        parsing.set(Boolean.TRUE);\n");
+        out.append("        try {\n");
+        out.append("            return doParse(args);\n");
+        out.append("        } finally {\n");
+        out.append("            parsing.remove();\n");
+        out.append("        }\n");
+        out.append("    }\n\n");
+
+        out.append("    public void printUsage(PrintStream ps) {\n");
+        out.append("        ps.print(USAGE);\n");
+        out.append("    }\n\n");
+
+        out.append("    private ").append(config).append(" doParse(String[] args) {\n");
+        out.append("        ").append(config).append(" config = new ").append(config).append("();\n");
+        for (Field field : fields) {
+            if (field.kind == Kind.FLAG) {
+                out.append("        config.").append(field.field).append(" = false;\n");
+            }
+        }
+        out.append("        boolean[] present = new boolean[").append(fields.size()).append("];\n");
+        out.append("        for (int i = 0; i < args.length; i++) {\n");
+        out.append("            String token = args[i];\n");
+        out.append("            int option = option(token);\n");
+        out.append("            if (option >= 0) {\n");
+        out.append("                if (FLAGS[option]) {\n");
+        out.append("                    set(config, present, option, null);\n");
+        out.append("                } else if (i < args.length - 1) {\n");
+        out.append("                    set(config, present, option, args[++i]);\n");
+        out.append("                }\n");
+        out.append("            } else if (token.length() > 2 && token.startsWith(\"--\")) {\n");
+        out.append("                int eq = token.indexOf('=', 2);\n");
+        out.append("                option = eq < 0 ? -1 : option(token.substring(0, eq));\n");
+        out.append("                if (option >= 0 && !FLAGS[option]) {\n");
+        out.append("                    set(config, present, option, token.substring(eq + 1));\n");
+        out.append("                }\n");
+        out.append("            } else if (token.length() > 2 && token.charAt(0) == '-' && isCluster(token)) {\n");
+        out.append("                for (int c = 1; c < token.length(); c++) {\n");
+        out.append("                    option = option(token.charAt(c));\n");
+        out.append("                    if (FLAGS[option]) {\n");
+        out.append("                        set(config, present, option, null);\n");
+        out.append("                        continue;\n");
+        out.append("                    }\n");
+        out.append("                    if (c < token.length() - 1) {\n");
+        out.append("                        set(config, present, option, token.substring(c + 1));\n");
+        out.append("                    } else if (i < args.length - 1) {\n");
+        out.append("                        set(config, present, option, args[++i]);\n");
+        out.append("                    }\n");
+        out.append("                    break;\n");
+        out.append("                }\n");
+        out.append("            }\n");
+        out.append("        }\n");
+        for (int k = 0; k < fields.size(); k++) {
+            Field field = fields.get(k);
+            if (field.kind == Kind.FLAG) {
+                continue;
+            }
+            out.append("        if (!present[").append(k).append("]) {\n");
+            if (field.defaultValue == null) {
+                out.append("            throw fail(new IllegalArgumentException(")
+                        .append(literal("Missing required parameter: " + names(field))).append("));\n");
+            } else {
+                out.append("            config.").append(field.field).append(" = ")
+                        .append(constant(field.kind, field.defaultValue)).append(";\n");
+            }
+            out.append("        }\n");
+        }
+        out.append("        return config;\n");
+        out.append("    }\n\n");
+
+        out.append("    private void set(").append(config)
+                .append(" config, boolean[] present, int option, String input) {\n");
+        out.append("        switch (option) {\n");
+        for (int k = 0; k < fields.size(); k++) {
+            Field field = fields.get(k);
+            out.append("            case ").append(k).append(":\n");
+            if (field.kind == Kind.FLAG) {
+                out.append("                config.").append(field.field).append(" = true;\n");
+            } else if (field.kind == Kind.STRING) {
+                out.append("                config.").append(field.field).append(" = input;\n");
+            } else {
+                out.append("                try {\n");
+                out.append("                    config.").append(field.field).append(" = ")
+                        .append(parser(field.kind)).append("(input);\n");
+                out.append("                } catch (IllegalArgumentException e) {\n");
+                out.append("                    throw fail(new IllegalArgumentException(")
+                        .append(literal("Failed to resolve parameter: " + names(field) + ": "))
+                        .append(" + e.getMessage(), e));\n");
+                out.append("                }\n");
+            }
+            out.append("                present[").append(k).append("] = true;\n");
+            out.append("                break;\n");
+        }
+        out.append("            default:\n");
+        out.append("                break;\n");
+        out.append("        }\n");
+        out.append("    }\n\n");
+
+        out.append("    private static int option(String key) {\n");
+        out.append("        switch (key) {\n");
+        for (int k = 0; k < fields.size(); k++) {
+            Field field = fields.get(k);
+            out.append("            case ").append(literal("-" + field.chr)).append(":\n");
+            out.append("            case ").append(literal("--" + field.name)).append(":\n");
+            out.append("                return ").append(k).append(";\n");
+        }
+        out.append("            default:\n");
+        out.append("                return -1;\n");
+        out.append("        }\n");
+        out.append("    }\n\n");
+
+        out.append("    private static int option(char chr) {\n");
+        out.append("        switch (chr) {\n");
+        for (int k = 0; k < fields.size(); k++) {
+            out.append("            case ").append(literal(fields.get(k).chr)).append(":\n");
+            out.append("                return ").append(k).append(";\n");
+        }
+        out.append("            default:\n");
+        out.append("                return -1;\n");
+        out.append("        }\n");
+        out.append("    }\n\n");
+
+        out.append("    /**\n");
+        out.append("     * Every char of the token after the dash is a short name, and all the names before the first param\n");
+        out.append("     * are flags.\n");
+        out.append("     */\n");
+        out.append("    private static boolean isCluster(String token) {\n");
+        out.append("        for (int c = 1; c < token.length(); c++) {\n");
+        out.append("            int option = option(token.charAt(c));\n");
+        out.append("            if (option < 0) {\n");
+        out.append("                return false;\n");
+        out.append("            }\n");
+        out.append("            if (!FLAGS[option]) {\n");
+        out.append("                return true;\n");
+        out.append("            }\n");
+        out.append("        }\n");
+        out.append("        return true;\n");
+        out.append("    }\n\n");
+
+        out.append("    private IllegalStateException fail(RuntimeException e) {\n");
+        out.append("        errorHandler.accept(e, this);\n");
+        out.append("        return new IllegalStateException(")
+                .append(literal("Error handler did not terminate execution flow of `parse`.")).append(");\n");
+        out.append("    }\n\n");
+
+        out.append("    private static final class Rethrow implements BiConsumer<RuntimeException, ")
+                .append(parser).append("> {\n");
+        out.append("        @Override\n");
+        out.append("        public void accept(RuntimeException e, ").append(parser).append(" parser) {\n");
+        out.append("            throw e;\n");
+        out.append("        }\n");
+        out.append("    }\n");
+        out.append("}\n");
+
+        String qualified = pkg.isEmpty() ? parser : pkg + "." + parser;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualified, owner);
+            try (Writer writer = file.openWriter()) {
+                writer.write(out.toString());
+            }
+        } catch (IOException e) {
+            error(owner, "Failed to write " + qualified + ": " + e.getMessage());
+        }
+    }
+
+    private static String parserName(TypeElement owner) {
+        StringBuilder name = new StringBuilder(owner.getSimpleName());
+        Element enclosing = owner.getEnclosingElement();
+        while (enclosing instanceof TypeElement) {
+            name.insert(0, enclosing.getSimpleName() + "_");
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name.append("Parser").toString();
+    }
+
+    private static String names(Field field) {
+        return "\"-" + field.chr + "\" / \"--" + field.name + "\"";
+    }
+
+    private static String parser(Kind kind) {
+        switch (kind) {
+            case INT:
+                return "Integer.parseInt";
+            case LONG:
+                return "Long.parseLong";
+            default:
+                return "Double.parseDouble";
+        }
+    }
+
+    private static String constant(Kind kind, String value) {
+        switch (kind) {
+            case INT:
+                return Integer.toString(Integer.parseInt(value));
+            case LONG:
+                return Long.parseLong(value) + "L";
+            case DOUBLE:
+                double d = Double.parseDouble(value);
+                if (Double.isNaN(d)) {
+                    return "Double.NaN";
+                }
+                if (Double.isInfinite(d)) {
+                    return d > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+                }
+                return Double.toString(d);
+            default:
+                return literal(value);
+        }
+    }
+
+    /**
+     * Same text as {@code Argumentz.printUsage} renders for the same options.
+     */
+    private static String usage(List<Field> fields) {
+        StringBuilder sb = new StringBuilder("Usage: java -cp <...> <MainClass> [ARGUMENTS]\n");
+        for (Field field : fields) {
+            String chr = "-" + field.chr;
+            String name = "--" + field.name;
+            if (field.kind == Kind.FLAG) {
+                sb.append(String.format("%7.14s %-15.30s %-15.50s", chr, name, field.desc));
+            } else {
+                sb.append(String.format("%7.14s %-15.30s %-15.60s", chr, name, field.desc));
+                if (field.defaultValue != null) {
+                    sb.append(" (default: ").append(parse(field.kind, field.defaultValue)).append(")");
+                } else {
+                    sb.append(" (required)");
+                }
+            }
+            sb.append("\n");
+        }
+        return literal(sb.toString());
+    }
+
+    private static String literal(char c) {
+        String s = literal(String.valueOf(c));
+        return "'" + (c == '\'' ? "\\'" : s.substring(1, s.length() - 1)) + "'";
+    }
+
+    private static String literal(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
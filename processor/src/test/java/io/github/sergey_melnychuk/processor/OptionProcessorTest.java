@@ -0,0 +1,114 @@
+package io.github.sergey_melnychuk.processor;
+
+import io.github.sergey_melnychuk.Argumentz;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class OptionProcessorTest {
+
+    // runtime counterpart of ServerConfig
+    private static Argumentz.Builder makeBuilder() {
+        return Argumentz.builder()
+                .withParam('u', "user", "username to connect to the server", () -> "guest")
+                .withIntParam('p', "port", "port for server to listen", 8080)
+                .withParam('s', "seconds", "timeout in seconds", Integer::parseInt)
+                .withParam('h', "host", "host for client to connect to")
+                .withLongParam('z', "size", "max size in bytes", 4294967296L)
+                .withDoubleParam('r', "ratio", "sampling ratio", 0.5)
+                .withFlag('v', "verbose", "enable extra logging");
+    }
+
+    private static final List<String[]> INPUTS = Arrays.asList(
+            new String[]{"-u", "admin", "-p", "9000", "-s", "3600", "-h", "localhost", "-v"},
+            new String[]{"--seconds", "60", "--host", "example.com", "--size", "1", "--ratio", "0.25"},
+            new String[]{"-s", "1", "-h", "a", "-s", "2", "unknown", "-x", "-u"},
+            new String[]{"-s1", "-hlocalhost", "-p9000", "-z10", "-r0.75", "-uadmin"},
+            new String[]{"--seconds=60", "--host=a=b", "--port=9000", "--ratio=", "--user="},
+            new String[]{"-vs", "60", "-vh", "example.com", "-vp9000"},
+            new String[]{"-s", "1", "-h", "a", "--verbose=true", "-vx", "-xv", "--bogus=1", "-pv"},
+            new String[]{"-s", "1", "-h", "a", "-vpPORT"},
+            new String[]{"-s", "1", "-h", "a", "--port=PORT"},
+            new String[]{"-s", "1", "-hv", "-v"},
+            new String[]{"-s", "1", "-h"},
+            new String[]{"-s", "1", "-h", "a", "-p", "PORT"},
+            new String[]{"-s", "1", "-h", "a", "-r", "half"},
+            new String[]{"-s", "SECONDS", "-h", "a"},
+            new String[]{"-s", "1"},
+            new String[]{"-h", "a"},
+            new String[]{}
+    );
+
+    private static String describe(ServerConfig config) {
+        return config.user + "|" + config.port + "|" + config.seconds + "|" + config.host + "|" +
+                config.size + "|" + config.ratio + "|" + config.verbose;
+    }
+
+    private static String describe(Argumentz.Match match) {
+        return match.get("user") + "|" + match.getIntValue("port") + "|" + match.getInt("seconds") + "|" +
+                match.get("host") + "|" + match.getLongValue("size") + "|" + match.getDoubleValue("ratio") + "|" +
+                match.getFlag("verbose");
+    }
+
+    @Test
+    void testGeneratedParserBehavesLikeArgumentz() {
+        Argumentz argumentz = makeBuilder().build();
+        ServerConfigParser parser = new ServerConfigParser();
+
+        for (String[] args : INPUTS) {
+            String expected;
+            try {
+                expected = describe(argumentz.match(args));
+            } catch (RuntimeException e) {
+                expected = e.getClass().getName() + ": " + e.getMessage();
+            }
+
+            String actual;
+            try {
+                actual = describe(parser.parse(args));
+            } catch (RuntimeException e) {
+                actual = e.getClass().getName() + ": " + e.getMessage();
+            }
+
+            assertThat(actual).as(Arrays.toString(args)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void testGeneratedUsageIsTheSame() {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        makeBuilder().build().printUsage(new PrintStream(expected));
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        new ServerConfigParser().printUsage(new PrintStream(actual));
+
+        assertThat(actual.toString()).isEqualTo(expected.toString());
+    }
+
+    @Test
+    void testErrorHandlerContract() {
+        StringBuilder message = new StringBuilder();
+        ServerConfigParser parser = new ServerConfigParser((e, p) -> message.append(e.getMessage()));
+
+        assertThatThrownBy(() -> parser.parse(new String[]{"-s", "1"}))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Error handler did not terminate execution flow of `parse`.");
+        assertThat(message.toString()).isEqualTo("Missing required parameter: \"-h\" / \"--host\"");
+    }
+
+    @Test
+    void testInfiniteRecursiveParseIsDetected() {
+        String[] args = {"-s", "1"};
+        ServerConfigParser parser = new ServerConfigParser((e, p) -> p.parse(args));
+
+        assertThatThrownBy(() -> parser.parse(args))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Infinite recursive call to ServerConfigParser.parse detected.");
+    }
+}
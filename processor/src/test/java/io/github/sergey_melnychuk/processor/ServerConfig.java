@@ -0,0 +1,24 @@
+package io.github.sergey_melnychuk.processor;
+
+public class ServerConfig {
+    @Option(chr = 'u', name = "user", desc = "username to connect to the server", defaultValue = "guest")
+    String user;
+
+    @Option(chr = 'p', name = "port", desc = "port for server to listen", defaultValue = "8080")
+    int port;
+
+    @Option(chr = 's', name = "seconds", desc = "timeout in seconds")
+    Integer seconds;
+
+    @Option(chr = 'h', name = "host", desc = "host for client to connect to")
+    String host;
+
+    @Option(chr = 'z', name = "size", desc = "max size in bytes", defaultValue = "4294967296")
+    long size;
+
+    @Option(chr = 'r', name = "ratio", desc = "sampling ratio", defaultValue = "0.50")
+    double ratio;
+
+    @Option(chr = 'v', name = "verbose", desc = "enable extra logging")
+    boolean verbose;
+}
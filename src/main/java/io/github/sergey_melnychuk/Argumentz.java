@@ -1,13 +1,44 @@
 package io.github.sergey_melnychuk;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class Argumentz {
     private static final Function<String, String> ID = x -> x;
+    private static final Object NULL = new Object();
+    /**
+     * Error handler of siblings that collect errors instead of reporting them, which is passed on to subcommands.
+     */
+    private static final BiConsumer<RuntimeException, Argumentz> RETHROW = (e, a) -> {
+        throw e;
+    };
 
     public interface Builder {
         <T> Builder withParam(char chr, String name, String desc, Function<String, T> mapper, Supplier<T> defaultValue);
@@ -18,260 +49,3196 @@ public class Argumentz {
 
         Builder withParam(char chr, String name, String desc);
 
+        Builder withIntParam(char chr, String name, String desc, int defaultValue);
+
+        Builder withIntParam(char chr, String name, String desc);
+
+        Builder withLongParam(char chr, String name, String desc, long defaultValue);
+
+        Builder withLongParam(char chr, String name, String desc);
+
+        Builder withDoubleParam(char chr, String name, String desc, double defaultValue);
+
+        Builder withDoubleParam(char chr, String name, String desc);
+
         Builder withFlag(char chr, String name, String desc);
 
+        /**
+         * Same as {@link #withParam(char, String, String, Function, Supplier)} with the mapper wrapped
+         * into a {@link CachedMapper} of at most {@code maxSize} entries, shared by all matches of the built instance.
+         * To see hit and miss statistics, wrap the mapper with {@link CachedMapper#of(Function, int)} instead.
+         */
+        <T> Builder withCachedParam(char chr, String name, String desc, Function<String, T> mapper,
+                                    Supplier<T> defaultValue, int maxSize);
+
+        <T> Builder withCachedParam(char chr, String name, String desc, Function<String, T> mapper, int maxSize);
+
+        /**
+         * Param that may be given any number of times, all values are collected in the order given,
+         * see {@link Match#getAll(Class, String)}.
+         */
+        <T> Builder withRepeatableParam(char chr, String name, String desc, Function<String, T> mapper);
+
+        /**
+         * Repeatable param whose values are passed to {@code consumer} one by one while matching,
+         * and not kept in the {@link Match}.
+         */
+        <T> Builder withRepeatableParam(char chr, String name, String desc,
+                                        Function<String, T> mapper, Consumer<? super T> consumer);
+
+        /**
+         * Repeatable param collected into {@code int[]} without boxing, see {@link Match#getInts(String)}.
+         */
+        Builder withRepeatableIntParam(char chr, String name, String desc);
+
+        /**
+         * Repeatable param collected into {@code long[]} without boxing, see {@link Match#getLongs(String)}.
+         */
+        Builder withRepeatableLongParam(char chr, String name, String desc);
+
+        /**
+         * Register a git-style subcommand. The first token that is neither an option nor a value of a param
+         * selects the command, and all the tokens after it are matched by its parser. Parser is built only
+         * when its command is selected (at most once per instance), so unused commands cost nothing.
+         * Options of this parser are global: they go before the command and can be read from the match
+         * of the command as well.
+         */
+        Builder withCommand(String name, String desc, Supplier<Argumentz> parser);
+
+        Builder withCommand(String name, Supplier<Argumentz> parser);
+
         Builder withErrorHandler(BiConsumer<RuntimeException, Argumentz> errorHandler);
 
+        /**
+         * Defer mappers and default suppliers of params until the value is first read from a {@link Match}.
+         * Each value is resolved at most once per match, also when read concurrently. Missing required params
+         * (those without a default) are still reported by {@code match}, while mapping failures and defaults
+         * that turn out to be null go to the error handler at the time of the read.
+         */
+        Builder withLazyEvaluation();
+
+        /**
+         * Accept any unambiguous prefix of a long name, such as {@code --verb} for {@code --verbose}.
+         * A prefix of more than one long name is an error listing all of them. Exact names always win,
+         * so {@code --port} is not ambiguous with {@code --ports}.
+         */
+        Builder withAbbreviations();
+
+        /**
+         * Expand {@code @path} tokens into the contents of argument files, the way javac does: tokens are
+         * separated by whitespace, may be quoted, and {@code #} starts a comment. Argument files may refer
+         * to other argument files. Use {@code @@} to pass a token that starts with {@code @} as is.
+         */
+        Builder withArgumentFiles();
+
+        /**
+         * Report progress of every match to the listener, see {@link Listener}. May be called more than once,
+         * listeners are then called in the order they were added. Without listeners there is no timing at all.
+         */
+        Builder withListener(Listener listener);
+
+        /**
+         * Codec for values of a custom type (and its subtypes), used by {@link #serialize(Match)}.
+         * Strings, numbers, booleans, primitive params and lists of those need no codec.
+         */
+        <T> Builder withCodec(Class<T> type, Codec<T> codec);
+
+        /**
+         * Take values of options missing on the command line from environment variables named by the prefix
+         * and the long name in upper case with dashes replaced by underscores: {@code --max-conns} is read
+         * from {@code APP_MAX_CONNS} with prefix {@code "APP_"}. Flags accept {@code true} or {@code false}.
+         * The environment is read once, by {@link #build()}. Command line and system properties
+         * (see {@link #withSystemProperties(String)}) take precedence, default values come last.
+         */
+        Builder withEnvironment(String prefix);
+
+        /**
+         * Same as {@link #withEnvironment(String)} with the name of the variable for a long name
+         * (without dashes in front) given by {@code naming}, which may return null to skip the option.
+         */
+        Builder withEnvironment(Function<String, String> naming);
+
+        /**
+         * Take values of options missing on the command line from system properties named by the prefix
+         * and the long name: {@code --max-conns} is read from {@code app.max-conns} with prefix {@code "app."}.
+         * Properties are read once, by {@link #build()}, and take precedence over environment variables.
+         */
+        Builder withSystemProperties(String prefix);
+
+        /**
+         * Same as {@link #withSystemProperties(String)} with the name of the property for a long name
+         * (without dashes in front) given by {@code naming}, which may return null to skip the option.
+         */
+        Builder withSystemProperties(Function<String, String> naming);
+
         Argumentz build();
     }
 
     public interface Match {
+        /**
+         * Read-only view of all values by short and long names (including those of the parent command),
+         * backed by the match itself, so it is never copied.
+         */
         Map<String, Object> all();
 
-        String get(String name);
+        String get(String name);
+
+        Integer getInt(String name);
+
+        boolean getFlag(String name);
+
+        int getIntValue(String name);
+
+        long getLongValue(String name);
+
+        double getDoubleValue(String name);
+
+        <T> T getAs(Class<T> clazz, String name);
+
+        /**
+         * All values of a repeatable param (empty list if none), or a single value of a regular param.
+         */
+        <T> List<T> getAll(Class<T> clazz, String name);
+
+        int[] getInts(String name);
+
+        long[] getLongs(String name);
+
+        /**
+         * Name of the selected subcommand, or null if none was given.
+         */
+        String getCommand();
+
+        /**
+         * Match of the selected subcommand, which also resolves global options, or null if none was given.
+         */
+        Match getCommandMatch();
+
+        /**
+         * Typed view of the match: every method of the interface returns the value of the option with the same
+         * name, where {@code maxConns()}, {@code getMaxConns()} and {@code isMaxConns()} all read
+         * {@code --max-conns} (or {@code --maxConns}). Flags are read by methods returning {@code boolean}.
+         * Values are taken once, and types of all the methods are checked against them right here,
+         * so reading the values later never fails. Methods are mapped to options once per interface.
+         * Every method must read an option: default methods are rejected, as the typed view cannot run them.
+         */
+        <T> T bind(Class<T> type);
+
+        /**
+         * Where the value of the option came from (including options of the parent command),
+         * or null when there is no such option. An absent flag has the {@link Source#DEFAULT DEFAULT} source.
+         * A match loaded with {@link #deserialize(byte[])} only tells the command line from defaults.
+         */
+        Source source(String name);
+    }
+
+    /**
+     * Binary form of values of a custom type, see {@link Builder#withCodec(Class, Codec)}.
+     */
+    public interface Codec<T> {
+        void write(T value, DataOutput out) throws IOException;
+
+        T read(DataInput in) throws IOException;
+    }
+
+    /**
+     * Match owned by the caller, which is filled again by every {@link #match(String[], MutableMatch)},
+     * so that repeated matching does not allocate new arrays for values. Not thread-safe: each thread
+     * needs its own, and values read from it (and its {@link Match#all()} view) change with the next match.
+     * After a failed match its contents are undefined until the next successful one.
+     */
+    public interface MutableMatch extends Match {
+    }
+
+    /**
+     * Outcome of matching a single command line in a batch: either a {@link Match} or the error that would
+     * have been passed to the error handler.
+     */
+    public interface Result {
+        boolean isSuccess();
+
+        Match match();
+
+        RuntimeException error();
+    }
+
+    public enum Shell {
+        BASH, ZSH
+    }
+
+    /**
+     * Sources of values in the order of precedence, see {@link Builder#withSystemProperties(String)}
+     * and {@link Builder#withEnvironment(String)}.
+     */
+    public enum Source {
+        COMMAND_LINE, PROPERTY, ENVIRONMENT, DEFAULT
+    }
+
+    /**
+     * Outcome of {@link #check(String[])}: the match when the command line is valid, otherwise every problem found.
+     */
+    public interface Report {
+        boolean isValid();
+
+        /**
+         * @return the match, or null when there are problems
+         */
+        Match match();
+
+        List<Problem> problems();
+    }
+
+    /**
+     * Problem with a single token or option found by {@link #check(String[])}.
+     */
+    public static final class Problem {
+        public enum Kind {
+            /** Token that is neither an option nor a value of one, or unknown command. */
+            UNKNOWN,
+            /** Prefix of more than one long name, see {@link Builder#withAbbreviations()}. */
+            AMBIGUOUS,
+            /** Required param without a value or default. */
+            MISSING,
+            /** Param given as the last token, without a value. */
+            MISSING_VALUE,
+            /** Mapper or default value supplier failed to produce a value. */
+            INVALID,
+            /** Argument file that could not be read. */
+            ARGUMENT_FILE
+        }
+
+        private final Kind kind;
+        private final String token;
+        private final String message;
+
+        private Problem(Kind kind, String token, String message) {
+            this.kind = kind;
+            this.token = token;
+            this.message = message;
+        }
+
+        public Kind kind() {
+            return kind;
+        }
+
+        /**
+         * Long name of the option ("--name"), or the token itself for unknown ones.
+         */
+        public String token() {
+            return token;
+        }
+
+        /**
+         * Same message as the error handler would get for this problem.
+         */
+        public String message() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return kind + ": " + message;
+        }
+    }
+
+    /**
+     * Match of the command line layered over an options file that is re-read whenever it changes,
+     * see {@link #watch(Path, String[])}.
+     */
+    public interface Live extends AutoCloseable {
+        /**
+         * Latest snapshot. It is swapped atomically on reload, so reading it never blocks.
+         */
+        Match current();
+
+        void addListener(ChangeListener listener);
+
+        /**
+         * Handler for failed reloads, the previous snapshot stays current. By default failures are ignored.
+         */
+        void onError(Consumer<RuntimeException> handler);
+
+        /**
+         * Re-read the options file now, without waiting for a change to be reported.
+         */
+        void reload();
+
+        /**
+         * Stop watching the options file.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Instrumentation callbacks, called on the matching thread, so implementations must be thread-safe
+     * when the instance is shared. Times are measured with {@link System#nanoTime()}. See {@link MatchStats}
+     * for aggregated counters and histograms.
+     */
+    public interface Listener {
+        default void matchStarted() {
+        }
+
+        /**
+         * Called after every top-level match, including the failed ones.
+         */
+        default void matchFinished(long nanos, boolean success) {
+        }
+
+        /**
+         * Time spent in the mapper of the option (by long name), successful or not.
+         */
+        default void mapped(String name, long nanos) {
+        }
+
+        /**
+         * Time spent in the default value supplier of the option (by long name), successful or not.
+         */
+        default void defaulted(String name, long nanos) {
+        }
+
+        /**
+         * Called with the error right before it is passed to the error handler.
+         */
+        default void failed(RuntimeException error) {
+        }
+    }
+
+    public interface ChangeListener {
+        /**
+         * Called after a reload for every option (by long name) whose value has changed.
+         */
+        void changed(String name, Object oldValue, Object newValue);
+    }
+
+    /**
+     * Listener calling every one of the listeners added to the builder, in the order they were added.
+     */
+    private static final class Listeners implements Listener {
+        private final Listener[] listeners;
+
+        private Listeners(Listener[] listeners) {
+            this.listeners = listeners;
+        }
+
+        @Override
+        public void matchStarted() {
+            for (Listener listener : listeners) {
+                listener.matchStarted();
+            }
+        }
+
+        @Override
+        public void matchFinished(long nanos, boolean success) {
+            for (Listener listener : listeners) {
+                listener.matchFinished(nanos, success);
+            }
+        }
+
+        @Override
+        public void mapped(String name, long nanos) {
+            for (Listener listener : listeners) {
+                listener.mapped(name, nanos);
+            }
+        }
+
+        @Override
+        public void defaulted(String name, long nanos) {
+            for (Listener listener : listeners) {
+                listener.defaulted(name, nanos);
+            }
+        }
+
+        @Override
+        public void failed(RuntimeException error) {
+            for (Listener listener : listeners) {
+                listener.failed(error);
+            }
+        }
+    }
+
+    private enum Repeat {
+        LIST, INTS, LONGS, EACH
+    }
+
+    /**
+     * Compiled option: every option (flag or param) owns a slot, which indexes its value in a {@link Match}.
+     * Params of primitive {@code type} (int, long or double) keep their value as raw bits in a {@code long[]}
+     * and never box; {@code defaultBits} holds their default, if any.
+     */
+    private static final class Option {
+        private final int slot;
+        private final String chr;
+        private final String name;
+        /** Long name without the dashes: the key of its value in a match and in listener events. */
+        private final String key;
+        private final String desc;
+        private final boolean flag;
+        private final Function<String, ?> mapper;
+        private final Supplier<?> defaultValue;
+        private final Class<?> type;
+        private final long defaultBits;
+        private final Repeat repeat;
+        private final Consumer<Object> consumer;
+
+        private Option(int slot, char chr, String name, String desc,
+                       boolean flag, Function<String, ?> mapper, Supplier<?> defaultValue) {
+            this(slot, chr, name, desc, flag, mapper, defaultValue, null, 0L, null, null);
+        }
+
+        private Option(int slot, char chr, String name, String desc,
+                       boolean flag, Function<String, ?> mapper, Supplier<?> defaultValue,
+                       Class<?> type, long defaultBits) {
+            this(slot, chr, name, desc, flag, mapper, defaultValue, type, defaultBits, null, null);
+        }
+
+        private Option(int slot, char chr, String name, String desc,
+                       Repeat repeat, Function<String, ?> mapper, Consumer<Object> consumer) {
+            this(slot, chr, name, desc, false, mapper, null, null, 0L, repeat, consumer);
+        }
+
+        private Option(int slot, char chr, String name, String desc,
+                       boolean flag, Function<String, ?> mapper, Supplier<?> defaultValue,
+                       Class<?> type, long defaultBits, Repeat repeat, Consumer<Object> consumer) {
+            this.slot = slot;
+            this.chr = prefixed(chr);
+            this.name = prefixed(name);
+            this.key = name;
+            this.desc = desc;
+            this.flag = flag;
+            this.mapper = mapper;
+            this.defaultValue = defaultValue;
+            this.type = type;
+            this.defaultBits = defaultBits;
+            this.repeat = repeat;
+            this.consumer = consumer;
+        }
+
+        private boolean isPrimitive() {
+            return type != null;
+        }
+
+        private long parse(String input) {
+            if (type == int.class || repeat == Repeat.INTS) {
+                return Integer.parseInt(input);
+            }
+            if (type == long.class || repeat == Repeat.LONGS) {
+                return Long.parseLong(input);
+            }
+            return Double.doubleToRawLongBits(Double.parseDouble(input));
+        }
+
+        /**
+         * Same as {@link #parse(String)}, but an invalid number is reported with the message of the exception
+         * that {@code parse} would throw, without creating one. Input that the JDK accepts beyond plain decimal
+         * numbers (non-ASCII digits, and for doubles also surrounding whitespace, type suffixes and hex)
+         * is left to {@code parse}.
+         */
+        private Conversion<Long> tryParse(String input) {
+            int length = input.length();
+            boolean fraction = false;
+            Conversion<Long> parsed;
+            if (type == int.class || repeat == Repeat.INTS) {
+                Conversion<Integer> i = Converters.toInt(input, 0, length);
+                parsed = i.isValid() ? Conversion.of((long) i.value()) : null;
+            } else if (type == long.class || repeat == Repeat.LONGS) {
+                parsed = Converters.toLong(input, 0, length);
+                parsed = parsed.isValid() ? parsed : null;
+            } else {
+                fraction = true;
+                Conversion<Double> d = Converters.toDouble(input, 0, length);
+                parsed = d.isValid() ? Conversion.of(Double.doubleToRawLongBits(d.value())) : null;
+            }
+            if (parsed != null) {
+                return parsed;
+            }
+            for (int i = 0; i < length; i++) {
+                char c = input.charAt(i);
+                if (c > 0x7F || fraction && (c <= ' ' || "dDfFxXpP".indexOf(c) >= 0)) {
+                    try {
+                        return Conversion.of(parse(input));
+                    } catch (NumberFormatException e) {
+                        return Conversion.failed(e.getMessage());
+                    }
+                }
+            }
+            if (fraction && length == 0) {
+                return Conversion.failed("empty String");
+            }
+            if (fraction && multiplePoints(input)) {
+                return Conversion.failed("multiple points");
+            }
+            return Conversion.failed("For input string: \"" + input + "\"");
+        }
+
+        /**
+         * Whether the digits after the sign have more than one point, that {@link Double#parseDouble(String)}
+         * reports with a message of its own.
+         */
+        private static boolean multiplePoints(String input) {
+            int i = input.startsWith("-") || input.startsWith("+") ? 1 : 0;
+            boolean point = false;
+            for (; i < input.length(); i++) {
+                char c = input.charAt(i);
+                if (c == '.') {
+                    if (point) {
+                        return true;
+                    }
+                    point = true;
+                } else if (c < '0' || c > '9') {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        private Object box(long bits) {
+            if (type == int.class) {
+                return (int) bits;
+            }
+            if (type == long.class) {
+                return bits;
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        private String missing() {
+            return "Missing required parameter: \"" + chr + "\" / \"" + name + "\"";
+        }
+    }
+
+    /**
+     * Subcommand with its parser built on first use.
+     */
+    private static final class Command {
+        private final String name;
+        private final String desc;
+        private final Supplier<Argumentz> supplier;
+        private volatile Argumentz parser;
+        private volatile Argumentz rethrowing;
+
+        private Command(String name, String desc, Supplier<Argumentz> supplier) {
+            this.name = name;
+            this.desc = desc;
+            this.supplier = supplier;
+        }
+
+        private Argumentz parser() {
+            Argumentz parser = this.parser;
+            if (parser == null) {
+                synchronized (this) {
+                    parser = this.parser;
+                    if (parser == null) {
+                        parser = supplier.get();
+                        this.parser = parser;
+                    }
+                }
+            }
+            return parser;
+        }
+
+        /**
+         * Parser that throws errors instead of passing them to its error handler, for parents that collect them.
+         */
+        private Argumentz rethrowing() {
+            Argumentz rethrowing = this.rethrowing;
+            if (rethrowing == null) {
+                rethrowing = parser().rethrowing();
+                this.rethrowing = rethrowing;
+            }
+            return rethrowing;
+        }
+    }
+
+    private final Option[] options;
+    private final Command[] commands;
+    private final KeyTable<Command> commandNames;
+    private final boolean primitives;
+    private final KeyTable<Option> keys;
+    private final Map<String, Option> names;
+    private final Usage usage;
+    private final BiConsumer<RuntimeException, Argumentz> errorHandler;
+    private final boolean lazy;
+    private final boolean argumentFiles;
+    private final Listener listener;
+    private final boolean abbreviations;
+    private final Class<?>[] codecTypes;
+    private final Codec<?>[] codecs;
+    private final Layers layers;
+    private volatile PrefixTrie<Object> prefixes;
+    private final ThreadLocal<Boolean> matching = ThreadLocal.withInitial(() -> false);
+
+    private Argumentz(Option[] options, Command[] commands,
+                      BiConsumer<RuntimeException, Argumentz> errorHandler, boolean lazy, boolean argumentFiles,
+                      Listener listener, boolean abbreviations, Map<Class<?>, Codec<?>> codecs, Layers layers) {
+        this.options = options;
+        this.commands = commands;
+        Map<String, Command> commandNames = new HashMap<>(commands.length * 2);
+        for (Command command : commands) {
+            commandNames.put(command.name, command);
+        }
+        this.commandNames = commands.length == 0 ? null : new KeyTable<>(commandNames);
+        this.primitives = Arrays.stream(options).anyMatch(Option::isPrimitive);
+        Map<String, Option> keys = new HashMap<>(options.length * 4);
+        this.names = new HashMap<>(options.length * 2);
+        for (Option option : options) {
+            keys.put(option.chr, option);
+            keys.put(option.name, option);
+            names.put(option.key, option);
+        }
+        this.keys = new KeyTable<>(keys);
+        this.usage = new Usage(options, commands, layers);
+        this.errorHandler = errorHandler;
+        this.lazy = lazy;
+        this.argumentFiles = argumentFiles;
+        this.listener = listener;
+        this.abbreviations = abbreviations;
+        this.codecTypes = codecs.keySet().toArray(new Class<?>[0]);
+        this.codecs = codecs.values().toArray(new Codec<?>[0]);
+        this.layers = layers;
+    }
+
+    private Argumentz(Argumentz that, BiConsumer<RuntimeException, Argumentz> errorHandler) {
+        this.options = that.options;
+        this.commands = that.commands;
+        this.commandNames = that.commandNames;
+        this.primitives = that.primitives;
+        this.keys = that.keys;
+        this.names = that.names;
+        this.usage = that.usage;
+        this.errorHandler = errorHandler;
+        this.lazy = that.lazy;
+        this.argumentFiles = that.argumentFiles;
+        this.listener = that.listener;
+        this.abbreviations = that.abbreviations;
+        this.codecTypes = that.codecTypes;
+        this.codecs = that.codecs;
+        this.layers = that.layers;
+        this.prefixes = that.prefixes;
+    }
+
+    /**
+     * Sibling sharing the spec of this instance, which throws errors instead of passing them to the error handler.
+     */
+    private Argumentz rethrowing() {
+        return new Argumentz(this, RETHROW);
+    }
+
+    /**
+     * Built instance is immutable, so {@code match} can be called concurrently from any number of threads
+     * (provided that mappers, default suppliers and the error handler are thread-safe as well).
+     */
+    public Match match(String[] args) {
+        return match(Tokens.of(args));
+    }
+
+    /**
+     * Match a complete command line, split into tokens with POSIX-like shell rules: whitespace separates
+     * tokens, single quotes keep text as is, double quotes allow {@code \"} and {@code \\} escapes
+     * and backslash outside of quotes escapes the next character. Unlike in argument files, {@code #} does not
+     * start a comment. Options are looked up directly in {@code line}, and strings are created only for values
+     * of params.
+     */
+    public Match match(CharSequence line) {
+        return match(Tokens.of(line));
+    }
+
+    /**
+     * Same as {@link #match(CharSequence)} for a UTF-8 encoded command line, between position and limit
+     * of the buffer. The position of the buffer is not changed.
+     */
+    public Match match(ByteBuffer line) {
+        return match(StandardCharsets.UTF_8.decode(line.duplicate()));
+    }
+
+    /**
+     * Empty match to be filled by {@link #match(String[], MutableMatch)}.
+     */
+    public MutableMatch newMatch() {
+        return new ArrayMatch();
+    }
+
+    /**
+     * Same as {@link #match(String[])}, but fills and returns the given match instead of creating a new one.
+     * Arrays of values and the option cursor of the match are reused, so matching a command line
+     * allocates only values created by mappers, defaults and matches of subcommands.
+     *
+     * @param into match created by {@link #newMatch()} of this instance
+     */
+    public Match match(String[] args, MutableMatch into) {
+        if (!owns(into)) {
+            throw new IllegalArgumentException("Match was not created by this instance.");
+        }
+        return match(Tokens.of(args), null, (ArrayMatch) into);
+    }
+
+    /**
+     * Check if the match was created by this instance or by a sibling sharing its spec (as in {@link #matchAll(List)}).
+     */
+    private boolean owns(Match match) {
+        return match instanceof ArrayMatch && ((ArrayMatch) match).owner().options == options;
+    }
+
+    private Match match(Tokens source) {
+        return match(source, null, null);
+    }
+
+    private ArrayMatch match(Tokens source, ArrayMatch previous) {
+        return match(source, previous, null);
+    }
+
+    private ArrayMatch match(Tokens source, ArrayMatch previous, ArrayMatch into) {
+        Tokens tokens = argumentFiles ? Tokens.expanding(source) : source;
+        if (listener == null) {
+            try {
+                return guarded(tokens, previous, null, into);
+            } finally {
+                tokens.close();
+            }
+        }
+
+        listener.matchStarted();
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            ArrayMatch match = guarded(tokens, previous, null, into);
+            success = true;
+            return match;
+        } finally {
+            tokens.close();
+            listener.matchFinished(System.nanoTime() - start, success);
+        }
+    }
+
+    private ArrayMatch guarded(Tokens tokens, ArrayMatch previous) {
+        return guarded(tokens, previous, null, null);
+    }
+
+    private ArrayMatch guarded(Tokens tokens, ArrayMatch previous, Deferred deferred, ArrayMatch into) {
+        if (matching.get()) {
+            throw new IllegalStateException("Infinite recursive call to Argumentz.match detected.");
+        }
+
+        matching.set(true);
+        try {
+            return doMatch(tokens, previous, deferred, into);
+        } finally {
+            matching.set(false);
+        }
+    }
+
+    /**
+     * Match every command line of the batch in parallel on the common fork-join pool.
+     * Results are in the order of {@code batch}. Failures are reported per item in the {@link Result}
+     * and never reach the error handler; with lazy evaluation, read failures of returned matches are thrown.
+     */
+    public List<Result> matchAll(List<String[]> batch) {
+        return matchAll(batch, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #matchAll(List)}, but runs on the given fork-join pool.
+     */
+    public List<Result> matchAll(List<String[]> batch, ForkJoinPool pool) {
+        Argumentz rethrowing = rethrowing();
+        try {
+            return pool.submit(() -> batch.parallelStream()
+                    .map(rethrowing::attempt)
+                    .collect(Collectors.toList()))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while matching a batch.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to match a batch.", e.getCause());
+        }
+    }
+
+    /**
+     * Check the command line in a single pass and report every problem instead of stopping at the first one.
+     * Nothing goes to the error handler: problems are collected as values, so none of them costs an exception,
+     * and failures of mappers and default suppliers are caught and reported by message. Unlike {@code match},
+     * tokens that are neither options nor values of params are reported as unknown. Values of params are
+     * resolved eagerly even with lazy evaluation, and consumers of repeatable params are called only
+     * when the whole command line is valid.
+     */
+    public Report check(String[] args) {
+        Tokens source = Tokens.of(args);
+        Tokens tokens = argumentFiles ? Tokens.expanding(source) : source;
+        List<Problem> problems = new ArrayList<>();
+        if (listener != null) {
+            listener.matchStarted();
+        }
+        long start = listener == null ? 0L : System.nanoTime();
+        try {
+            ArrayMatch match = checked(tokens, problems);
+            return new CheckReport(problems.isEmpty() ? match : null, Collections.unmodifiableList(problems));
+        } finally {
+            tokens.close();
+            if (listener != null) {
+                listener.matchFinished(System.nanoTime() - start, problems.isEmpty());
+            }
+        }
+    }
+
+    /**
+     * Check only the structure of the command line, without calling any mapper or default value supplier
+     * and without creating a {@link Match}: every token is an option, a value of a param or the command,
+     * every param is followed by a value and every required param is present. As with {@link #check(String[])},
+     * tokens that are neither options nor values are not allowed. The error handler is never called.
+     *
+     * @return options present on the command line, by index in the order they were added to the builder,
+     * or null when the command line is not valid; options of a command follow those of this parser, so that
+     * the command's option at index {@code i} is reported at the number of options of this parser plus {@code i}
+     */
+    public BitSet validate(String[] args) {
+        Tokens source = Tokens.of(args);
+        Tokens tokens = argumentFiles ? Tokens.expanding(source) : source;
+        try {
+            BitSet present = new BitSet(options.length);
+            return validate(tokens, present, 0) ? present : null;
+        } catch (IllegalArgumentException e) {
+            // argument file could not be read
+            return null;
+        } finally {
+            tokens.close();
+        }
+    }
+
+    private boolean validate(Tokens source, BitSet present, int offset) {
+        OptionTokens tokens = new OptionTokens(source);
+        while (tokens.next()) {
+            Option option = tokens.option();
+            if (option == null) {
+                Command command = commandNames == null ? null
+                        : commandNames.get(tokens.chars(), tokens.start(), tokens.end());
+                if (command == null || !command.parser().validate(source, present, offset + options.length)) {
+                    return false;
+                }
+                break;
+            }
+            if (!option.flag && !tokens.next()) {
+                return false;
+            }
+            present.set(offset + option.slot);
+        }
+        for (Option option : options) {
+            if (!option.flag && option.repeat == null && option.defaultValue == null
+                    && !present.get(offset + option.slot)
+                    && (layers == null || layers.values[option.slot] == null)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void checkedInput(ArrayMatch match, Option option, String input, String where, List<Problem> problems) {
+        final Object[] values = match.values;
+        int known = problems.size();
+        Object value = tryResolve(option, input, where, problems);
+        boolean resolved = problems.size() == known;
+        if (option.repeat != null) {
+            if (resolved) {
+                if (option.repeat == Repeat.LIST || option.repeat == Repeat.EACH) {
+                    if (values[option.slot] == null) {
+                        values[option.slot] = new ArrayList<>();
+                    }
+                    ((List<Object>) values[option.slot]).add(value);
+                } else {
+                    if (values[option.slot] == null) {
+                        values[option.slot] = new Longs();
+                    }
+                    ((Longs) values[option.slot]).add((Long) value);
+                }
+            }
+        } else if (option.isPrimitive()) {
+            match.bits[option.slot] = resolved ? (Long) value : 0L;
+        } else {
+            match.inputs[option.slot] = input;
+            values[option.slot] = value;
+        }
+        set(match.present, option.slot);
+    }
+
+    private ArrayMatch checked(Tokens tokens, List<Problem> problems) {
+        if (matching.get()) {
+            throw new IllegalStateException("Infinite recursive call to Argumentz.match detected.");
+        }
+
+        matching.set(true);
+        try {
+            return doCheck(tokens, problems);
+        } finally {
+            matching.set(false);
+        }
+    }
+
+    private static final class CheckReport implements Report {
+        private final Match match;
+        private final List<Problem> problems;
+
+        private CheckReport(Match match, List<Problem> problems) {
+            this.match = match;
+            this.problems = problems;
+        }
+
+        @Override
+        public boolean isValid() {
+            return problems.isEmpty();
+        }
+
+        @Override
+        public Match match() {
+            return match;
+        }
+
+        @Override
+        public List<Problem> problems() {
+            return problems;
+        }
+
+        @Override
+        public String toString() {
+            return "Report{valid=" + isValid() + ", problems=" + problems + "}";
+        }
+    }
+
+    /**
+     * Same as {@link #matchAsync(String[], Executor)}, on virtual threads when the runtime has them
+     * (Java 21 and later), and on the common fork-join pool otherwise.
+     */
+    public CompletableFuture<Match> matchAsync(String[] args) {
+        return matchAsync(args, AsyncExecutor.INSTANCE);
+    }
+
+    /**
+     * Match the command line with mappers and default value suppliers of params running concurrently
+     * on the executor, for mappers that block on I/O. Tokens are scanned first, also on the executor,
+     * then every param (including params of the subcommand) is resolved in a task of its own. Repeatable and
+     * primitive params are resolved during the scan, and with lazy evaluation nothing is resolved ahead of time.
+     * <p>
+     * The future completes with the match only when every task has succeeded. Otherwise the error handler
+     * gets the first failure, with the rest attached as suppressed, and the future completes exceptionally
+     * with whatever the handler throws (or with {@link IllegalStateException} if it returns).
+     * Mappers, default suppliers and listeners must be thread-safe.
+     */
+    public CompletableFuture<Match> matchAsync(String[] args, Executor executor) {
+        Deferred deferred = new Deferred(rethrowing());
+        long start = System.nanoTime();
+        CompletableFuture<Match> future = CompletableFuture
+                .supplyAsync(() -> {
+                    if (listener != null) {
+                        listener.matchStarted();
+                    }
+                    Tokens tokens = Tokens.of(args);
+                    Tokens source = argumentFiles ? Tokens.expanding(tokens) : tokens;
+                    try {
+                        return guarded(source, null, deferred, null);
+                    } finally {
+                        source.close();
+                    }
+                }, executor)
+                .thenCompose(match -> deferred.run(executor).thenApply(failures -> {
+                    if (!failures.isEmpty()) {
+                        RuntimeException error = failures.get(0);
+                        for (RuntimeException failure : failures.subList(1, failures.size())) {
+                            error.addSuppressed(failure);
+                        }
+                        errorHandler.accept(error, this);
+                        throw new IllegalStateException(
+                                "Error handler did not terminate execution flow of `matchAsync`.");
+                    }
+                    return match;
+                }));
+        if (listener == null) {
+            return future;
+        }
+        return future.whenComplete((match, e) -> listener.matchFinished(System.nanoTime() - start, e == null));
+    }
+
+    /**
+     * Resolution of params postponed by {@link #matchAsync(String[], Executor)}, where failures are thrown
+     * by the resolver instead of going to the error handler, so that all of them can be collected.
+     */
+    private static final class Deferred {
+        private final Argumentz resolver;
+        private final List<Runnable> tasks;
+
+        private Deferred(Argumentz resolver) {
+            this(resolver, new ArrayList<>());
+        }
+
+        private Deferred(Argumentz resolver, List<Runnable> tasks) {
+            this.resolver = resolver;
+            this.tasks = tasks;
+        }
+
+        /**
+         * Tasks of the subcommand, resolved by its own rethrowing parser and collected along with these.
+         */
+        private Deferred with(Argumentz resolver) {
+            return new Deferred(resolver, tasks);
+        }
+
+        private void resolve(Object[] values, Option option, String input, String where) {
+            tasks.add(() -> values[option.slot] = resolver.resolve(option, input, where, "match"));
+        }
+
+        private void resolveDefault(Object[] values, Option option) {
+            tasks.add(() -> values[option.slot] = resolver.resolveDefault(option, "match"));
+        }
+
+        /**
+         * Run all the tasks and collect their failures in the order of tasks.
+         */
+        private CompletableFuture<List<RuntimeException>> run(Executor executor) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(tasks.size());
+            for (Runnable task : tasks) {
+                futures.add(CompletableFuture.runAsync(task, executor));
+            }
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                    .handle((ignored, e) -> {
+                        List<RuntimeException> failures = new ArrayList<>();
+                        for (CompletableFuture<Void> future : futures) {
+                            try {
+                                future.join();
+                            } catch (CompletionException f) {
+                                Throwable cause = f.getCause();
+                                if (cause instanceof RuntimeException) {
+                                    failures.add((RuntimeException) cause);
+                                } else {
+                                    failures.add(f);
+                                }
+                            }
+                        }
+                        return failures;
+                    });
+        }
+    }
+
+    /**
+     * Executor starting a virtual thread per task when {@code Thread.ofVirtual()} is available.
+     * Looked up with reflection, as the library is compiled for Java 8.
+     */
+    private static final class AsyncExecutor {
+        private static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                Object factory = Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+                ThreadFactory threads = (ThreadFactory) factory;
+                return task -> threads.newThread(task).start();
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return ForkJoinPool.commonPool();
+            }
+        }
+    }
+
+    /**
+     * Match the command line layered over the options file: the file uses argument file syntax
+     * (see {@link Builder#withArgumentFiles()}), and values given on the command line take precedence.
+     * The file is watched for changes in a daemon thread and re-matched when it changes; params with the same
+     * input as before keep their values without running mappers or defaults again. The initial match
+     * reports errors to the error handler, as {@code match} does; errors of reloads go to
+     * {@link Live#onError(Consumer)} (and with lazy evaluation, read failures of reloaded snapshots are thrown).
+     */
+    public Live watch(Path file, String[] args) {
+        LiveMatch live = new LiveMatch(file, args);
+        live.start();
+        return live;
+    }
+
+    private final class LiveMatch implements Live {
+        private final Path file;
+        private final String[] args;
+        private final Argumentz rethrowing;
+        private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+        private final WatchService watchService;
+        private final Thread thread;
+        private volatile Consumer<RuntimeException> onError = e -> { };
+        private volatile ArrayMatch current;
+
+        private LiveMatch(Path file, String[] args) {
+            this.file = file.toAbsolutePath().normalize();
+            this.args = args.clone();
+            this.rethrowing = rethrowing();
+            this.current = match(tokens(), null);
+            WatchService watchService = null;
+            try {
+                watchService = this.file.getFileSystem().newWatchService();
+                this.file.getParent().register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException | RuntimeException e) {
+                if (watchService != null) {
+                    try {
+                        watchService.close();
+                    } catch (IOException c) {
+                        e.addSuppressed(c);
+                    }
+                }
+                String message = "Failed to watch options file: \"" + file + "\": " + e;
+                throw fail(new IllegalArgumentException(message, e), "watch");
+            }
+            this.watchService = watchService;
+            this.thread = new Thread(this::run, "argumentz-watch-" + this.file.getFileName());
+            this.thread.setDaemon(true);
+        }
+
+        private Tokens tokens() {
+            Tokens options = Tokens.of(new String[]{"@" + file});
+            // with argument files enabled `match` expands the options file along with the rest
+            return Tokens.concat(argumentFiles ? options : Tokens.expanding(options), Tokens.of(args));
+        }
+
+        private void start() {
+            thread.start();
+        }
+
+        private void run() {
+            while (true) {
+                WatchKey key;
+                try {
+                    key = watchService.take();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    return;
+                }
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || file.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    reload();
+                }
+                if (!key.reset()) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public Match current() {
+            return current;
+        }
+
+        @Override
+        public void addListener(ChangeListener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void onError(Consumer<RuntimeException> handler) {
+            this.onError = handler;
+        }
+
+        @Override
+        public synchronized void reload() {
+            ArrayMatch previous = current;
+            ArrayMatch next;
+            try {
+                next = rethrowing.match(tokens(), previous);
+            } catch (RuntimeException e) {
+                onError.accept(e);
+                return;
+            }
+            current = next;
+
+            if (listeners.isEmpty()) {
+                return;
+            }
+            for (Option option : options) {
+                Object before = previous.value(option);
+                Object after = next.value(option);
+                if (!Objects.deepEquals(before, after)) {
+                    String name = option.key;
+                    for (ChangeListener listener : listeners) {
+                        listener.changed(name, before, after);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // watcher thread stops either way
+            }
+        }
+    }
+
+    private Result attempt(String[] args) {
+        try {
+            return new BatchResult(match(args), null);
+        } catch (RuntimeException e) {
+            return new BatchResult(null, e);
+        }
+    }
+
+    private static final class BatchResult implements Result {
+        private final Match match;
+        private final RuntimeException error;
+
+        private BatchResult(Match match, RuntimeException error) {
+            this.match = match;
+            this.error = error;
+        }
+
+        @Override
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        @Override
+        public Match match() {
+            return match;
+        }
+
+        @Override
+        public RuntimeException error() {
+            return error;
+        }
+    }
+
+    /**
+     * @param previous match to take values from for params with the same input as before, may be null
+     * @param into match to fill, or null to create a new one
+     */
+    private ArrayMatch doMatch(Tokens source, ArrayMatch previous, Deferred deferred, ArrayMatch into) {
+        final ArrayMatch match = into == null ? new ArrayMatch() : into.reset();
+        final OptionTokens tokens = match.cursor(source);
+        final Object[] values = match.values;
+        final String[] inputs = match.inputs;
+        final long[] bits = match.bits;
+        final long[] present = match.present;
+
+        Command command = null;
+        while (next(tokens)) {
+            Option option = tokens.option();
+            if (option == null) {
+                if (tokens.isAmbiguous()) {
+                    throw fail(new IllegalArgumentException(ambiguous(tokens.token())), "match");
+                }
+                if (commandNames != null) {
+                    command = commandNames.get(tokens.chars(), tokens.start(), tokens.end());
+                    if (command == null) {
+                        String message = "Unknown command: \"" + tokens.token() + "\"";
+                        throw fail(new IllegalArgumentException(message), "match");
+                    }
+                    break;
+                }
+                continue;
+            }
+
+            if (option.flag) {
+                set(present, option.slot);
+                continue;
+            }
+
+            if (next(tokens)) {
+                input(match, option, tokens.token(), tokens.where(), previous, deferred);
+            }
+        }
+
+        if (layers != null) {
+            for (Option option : options) {
+                String input = layers.values[option.slot];
+                if (input == null || isSet(present, option.slot)) {
+                    continue;
+                }
+                set(match.layered, option.slot);
+                if (!option.flag) {
+                    input(match, option, input, layers.wheres[option.slot], previous, deferred);
+                } else if (layers.flag(option)) {
+                    set(present, option.slot);
+                } else if (!"false".equalsIgnoreCase(input)) {
+                    throw fail(new IllegalArgumentException(layers.invalidFlag(option)), "match");
+                }
+            }
+        }
+
+        for (Option option : options) {
+            if (option.repeat != null) {
+                values[option.slot] = collected(option, values[option.slot]);
+                continue;
+            }
+            if (option.flag || isSet(present, option.slot)) {
+                continue;
+            }
+            if (option.isPrimitive()) {
+                bits[option.slot] = resolvePrimitiveDefault(option);
+            } else if (lazy) {
+                if (option.defaultValue == null) {
+                    throw fail(new IllegalArgumentException(option.missing()), "match");
+                }
+            } else if (previous != null && previous.hasInput(option, null)) {
+                values[option.slot] = previous.values[option.slot];
+            } else if (deferred != null) {
+                deferred.resolveDefault(values, option);
+            } else {
+                values[option.slot] = resolveDefault(option, "match");
+            }
+        }
+
+        if (lazy && previous != null) {
+            for (Option option : options) {
+                if (option.repeat == null && !option.flag && !option.isPrimitive()
+                        && previous.hasInput(option, inputs[option.slot])) {
+                    match.resolved.set(option.slot, previous.resolved.get(option.slot));
+                }
+            }
+        }
+        if (command != null) {
+            ArrayMatch sub;
+            if (deferred != null) {
+                sub = command.parser().guarded(source, null, deferred.with(command.rethrowing()), null);
+            } else if (errorHandler == RETHROW) {
+                sub = command.rethrowing().guarded(source, null);
+            } else {
+                sub = command.parser().guarded(source, null);
+            }
+            sub.parent = match;
+            match.command = command.name;
+            match.sub = sub;
+        }
+        return match;
+    }
+
+    private void input(ArrayMatch match, Option option, String input, String where,
+                       ArrayMatch previous, Deferred deferred) {
+        if (option.repeat != null) {
+            collect(option, input, where, match.values);
+        } else if (option.isPrimitive()) {
+            match.bits[option.slot] = resolvePrimitive(option, input, where);
+        } else {
+            match.inputs[option.slot] = input;
+            if (lazy) {
+                // resolved on read
+            } else if (previous != null && previous.hasInput(option, input)) {
+                match.values[option.slot] = previous.values[option.slot];
+            } else if (deferred != null) {
+                deferred.resolve(match.values, option, input, where);
+            } else {
+                match.values[option.slot] = resolve(option, input, where, "match");
+            }
+        }
+        set(match.present, option.slot);
+    }
+
+    /**
+     * Same as {@link #doMatch(Tokens, ArrayMatch, Deferred, ArrayMatch)}, but problems are added to the list instead
+     * of going to the error handler.
+     *
+     * @return the match, which is only complete when there are no problems
+     */
+    @SuppressWarnings("unchecked")
+    private ArrayMatch doCheck(Tokens source, List<Problem> problems) {
+        final OptionTokens tokens = new OptionTokens(source);
+        final ArrayMatch match = new ArrayMatch();
+        final Object[] values = match.values;
+        final long[] bits = match.bits;
+        final long[] present = match.present;
+
+        Command command = null;
+        while (checkedNext(tokens, problems)) {
+            Option option = tokens.option();
+            if (option == null) {
+                String token = tokens.token();
+                if (tokens.isAmbiguous()) {
+                    problems.add(new Problem(Problem.Kind.AMBIGUOUS, token, ambiguous(token)));
+                    continue;
+                }
+                if (commandNames != null) {
+                    command = commandNames.get(tokens.chars(), tokens.start(), tokens.end());
+                    if (command != null) {
+                        break;
+                    }
+                    problems.add(new Problem(Problem.Kind.UNKNOWN, token, "Unknown command: \"" + token + "\""));
+                } else {
+                    problems.add(new Problem(Problem.Kind.UNKNOWN, token, "Unknown option: \"" + token + "\""));
+                }
+                continue;
+            }
+
+            if (option.flag) {
+                set(present, option.slot);
+                continue;
+            }
+
+            if (!checkedNext(tokens, problems)) {
+                String message = "Missing value of parameter: \"" + option.chr + "\" / \"" + option.name + "\"";
+                problems.add(new Problem(Problem.Kind.MISSING_VALUE, option.name, message));
+                break;
+            }
+            checkedInput(match, option, tokens.token(), tokens.where(), problems);
+        }
+
+        if (layers != null) {
+            for (Option option : options) {
+                String input = layers.values[option.slot];
+                if (input == null || isSet(present, option.slot)) {
+                    continue;
+                }
+                set(match.layered, option.slot);
+                if (!option.flag) {
+                    checkedInput(match, option, input, layers.wheres[option.slot], problems);
+                } else if (layers.flag(option)) {
+                    set(present, option.slot);
+                } else if (!"false".equalsIgnoreCase(input)) {
+                    problems.add(new Problem(Problem.Kind.INVALID, option.name, layers.invalidFlag(option)));
+                }
+            }
+        }
+
+        for (Option option : options) {
+            if (option.repeat == Repeat.EACH) {
+                List<Object> each = (List<Object>) values[option.slot];
+                if (each != null && problems.isEmpty()) {
+                    each.forEach(option.consumer);
+                }
+                values[option.slot] = null;
+                continue;
+            }
+            if (option.repeat != null) {
+                values[option.slot] = collected(option, values[option.slot]);
+                continue;
+            }
+            if (option.flag || isSet(present, option.slot)) {
+                continue;
+            }
+            if (option.defaultValue == null) {
+                problems.add(new Problem(Problem.Kind.MISSING, option.name, option.missing()));
+            } else if (option.isPrimitive()) {
+                bits[option.slot] = option.defaultBits;
+            } else {
+                try {
+                    values[option.slot] = option.defaultValue.get();
+                } catch (IllegalArgumentException e) {
+                    problems.add(new Problem(Problem.Kind.INVALID, option.name, e.getMessage()));
+                    continue;
+                }
+                if (values[option.slot] == null) {
+                    problems.add(new Problem(Problem.Kind.MISSING, option.name, option.missing()));
+                }
+            }
+        }
+
+        if (lazy) {
+            for (Option option : options) {
+                if (!option.flag && !option.isPrimitive() && option.repeat == null) {
+                    Object value = values[option.slot];
+                    match.resolved.set(option.slot, value == null ? NULL : value);
+                }
+            }
+        }
+        if (command != null) {
+            ArrayMatch sub = command.parser().checked(source, problems);
+            sub.parent = match;
+            match.command = command.name;
+            match.sub = sub;
+        }
+        return match;
+    }
+
+    /**
+     * Option named by the range of {@code chars}, or by unique prefix of the long name
+     * when abbreviations are enabled.
+     */
+    private Option lookup(CharSequence chars, int start, int end) {
+        Option option = keys.get(chars, start, end);
+        if (option != null || !abbreviations || !isLongName(chars, start, end)) {
+            return option;
+        }
+        Object value = prefixes().unique(chars, start, end);
+        return value instanceof Option ? (Option) value : null;
+    }
+
+    private boolean isPrefixOfMany(CharSequence chars, int start, int end) {
+        return abbreviations && isLongName(chars, start, end) && prefixes().count(chars, start, end) > 1;
+    }
+
+    private static boolean isLongName(CharSequence chars, int start, int end) {
+        return end - start > 2 && chars.charAt(start) == '-' && chars.charAt(start + 1) == '-';
+    }
+
+    /**
+     * Cursor over options and values of the command line, which also splits {@code --name=value},
+     * {@code -pVALUE} and clusters of short options such as {@code -abc} (where the first param of a cluster
+     * takes the rest of the token as its value, or the next token when there is no rest). Options are looked up
+     * by range within the token, so the only string created for such tokens is the value of a param.
+     * A token following a param is always its value, and tokens that do not split into known options
+     * are passed on whole.
+     */
+    private final class OptionTokens extends Tokens {
+        private Tokens source;
+        private StringBuilder shortName;
+        private CharSequence chars;
+        private int start;
+        private int end;
+        private boolean whole;
+        private Option option;
+        private boolean ambiguous;
+        private boolean value;
+        // part of the current token of the source that is yet to be returned, from rest to limit
+        private CharSequence restChars;
+        private int rest = -1;
+        private int limit;
+
+        private OptionTokens(Tokens source) {
+            this.source = source;
+        }
+
+        private OptionTokens reset(Tokens source) {
+            this.source = source;
+            this.option = null;
+            this.ambiguous = false;
+            this.value = false;
+            this.rest = -1;
+            return this;
+        }
+
+        /**
+         * Option of the current token, or null for values, commands and unknown tokens.
+         */
+        private Option option() {
+            return option;
+        }
+
+        /**
+         * Current token is an unknown long name, which is a prefix of more than one option.
+         */
+        private boolean isAmbiguous() {
+            return ambiguous;
+        }
+
+        @Override
+        boolean next() {
+            option = null;
+            ambiguous = false;
+            if (rest >= 0) {
+                return nextOfRest();
+            }
+            if (!source.next()) {
+                return false;
+            }
+            chars = source.chars();
+            start = source.start();
+            end = source.end();
+            whole = true;
+            if (value) {
+                value = false;
+                return true;
+            }
+
+            option = lookup(chars, start, end);
+            if (option != null) {
+                value = !option.flag;
+            } else if (isLongName(chars, start, end)) {
+                splitLongName();
+            } else if (end - start > 2 && chars.charAt(start) == '-') {
+                splitShortNames();
+            }
+            return true;
+        }
+
+        private boolean nextOfRest() {
+            whole = false;
+            if (value) {
+                // inline value of the param: --name=value, -pVALUE or -abpVALUE
+                value = false;
+                chars = restChars;
+                start = rest;
+                end = limit;
+                rest = -1;
+                return true;
+            }
+            shortName.setCharAt(1, restChars.charAt(rest));
+            option = keys.get(shortName, 0, 2);
+            value = !option.flag;
+            if (++rest == limit) {
+                rest = -1;
+            }
+            chars = shortName;
+            start = 0;
+            end = 2;
+            return true;
+        }
+
+        private void splitLongName() {
+            int eq = start + 2;
+            while (eq < end && chars.charAt(eq) != '=') {
+                eq++;
+            }
+            if (eq == end) {
+                ambiguous = isPrefixOfMany(chars, start, end);
+                return;
+            }
+            Option named = lookup(chars, start, eq);
+            if (named == null) {
+                ambiguous = isPrefixOfMany(chars, start, eq);
+                if (ambiguous) {
+                    end = eq;
+                    whole = false;
+                }
+                return;
+            }
+            if (named.flag) {
+                return;
+            }
+            option = named;
+            value = true;
+            rest = eq + 1;
+            limit = end;
+            restChars = chars;
+            end = eq;
+            whole = false;
+        }
+
+        private void splitShortNames() {
+            if (shortName == null) {
+                shortName = new StringBuilder("-?");
+            }
+            for (int i = start + 1; i < end; i++) {
+                shortName.setCharAt(1, chars.charAt(i));
+                Option next = keys.get(shortName, 0, 2);
+                if (next == null) {
+                    return;
+                }
+                if (!next.flag) {
+                    break;
+                }
+            }
+            option = keys.get(chars, start, start + 2);
+            value = !option.flag;
+            rest = start + 2;
+            limit = end;
+            restChars = chars;
+            end = start + 2;
+            whole = false;
+        }
+
+        @Override
+        String token() {
+            return whole ? source.token() : chars.subSequence(start, end).toString();
+        }
+
+        @Override
+        CharSequence chars() {
+            return chars;
+        }
+
+        @Override
+        int start() {
+            return start;
+        }
+
+        @Override
+        int end() {
+            return end;
+        }
+
+        @Override
+        String where() {
+            return source.where();
+        }
+    }
+
+    private String ambiguous(String token) {
+        StringBuilder sb = new StringBuilder("Ambiguous option: \"").append(token).append("\" matches ");
+        List<String> candidates = prefixes().keys(token);
+        for (int i = 0; i < candidates.size(); i++) {
+            sb.append(i == 0 ? "\"" : ", \"").append(candidates.get(i)).append("\"");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Prefix tree of option and command names, built on first use, as most command lines never need it.
+     */
+    private PrefixTrie<Object> prefixes() {
+        PrefixTrie<Object> prefixes = this.prefixes;
+        if (prefixes == null) {
+            synchronized (this) {
+                prefixes = this.prefixes;
+                if (prefixes == null) {
+                    Map<String, Object> names = new HashMap<>(options.length * 4 + commands.length * 2);
+                    for (Option option : options) {
+                        names.put(option.chr, option);
+                        names.put(option.name, option);
+                    }
+                    for (Command command : commands) {
+                        names.put(command.name, command);
+                    }
+                    prefixes = new PrefixTrie<>(names);
+                    this.prefixes = prefixes;
+                }
+            }
+        }
+        return prefixes;
+    }
+
+    private static boolean checkedNext(Tokens tokens, List<Problem> problems) {
+        try {
+            return tokens.next();
+        } catch (IllegalArgumentException e) {
+            problems.add(new Problem(Problem.Kind.ARGUMENT_FILE, null, e.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Resolve the value of the param, boxing raw bits of primitive ones.
+     *
+     * @return the value, or null when there is a problem with it (added to the list)
+     */
+    private Object tryResolve(Option option, String input, String where, List<Problem> problems) {
+        boolean primitive = option.isPrimitive() || option.repeat == Repeat.INTS || option.repeat == Repeat.LONGS;
+        long start = listener == null ? 0L : System.nanoTime();
+        try {
+            if (!primitive && option.mapper instanceof Converter) {
+                Conversion<?> conversion = ((Converter<?>) option.mapper).convert(input, 0, input.length());
+                if (conversion.isValid()) {
+                    return conversion.value();
+                }
+                problems.add(new Problem(Problem.Kind.INVALID, option.name,
+                        failedToResolveMessage(option, conversion.error(), where)));
+                return null;
+            }
+            if (primitive) {
+                Conversion<Long> parsed = option.tryParse(input);
+                if (parsed.isValid()) {
+                    return parsed.value();
+                }
+                problems.add(new Problem(Problem.Kind.INVALID, option.name,
+                        failedToResolveMessage(option, parsed.error(), where)));
+                return null;
+            }
+            return option.mapper.apply(input);
+        } catch (IllegalArgumentException e) {
+            problems.add(new Problem(Problem.Kind.INVALID, option.name, failedToResolveMessage(option, e, where)));
+            return null;
+        } finally {
+            if (listener != null) {
+                listener.mapped(option.key, System.nanoTime() - start);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collect(Option option, String input, String where, Object[] values) {
+        int slot = option.slot;
+        switch (option.repeat) {
+            case LIST:
+                if (values[slot] == null) {
+                    values[slot] = new ArrayList<>();
+                }
+                ((List<Object>) values[slot]).add(resolve(option, input, where, "match"));
+                break;
+            case EACH:
+                option.consumer.accept(resolve(option, input, where, "match"));
+                break;
+            default:
+                if (values[slot] == null) {
+                    values[slot] = new Longs();
+                }
+                ((Longs) values[slot]).add(resolvePrimitive(option, input, where));
+        }
+    }
+
+    private static Object collected(Option option, Object collected) {
+        switch (option.repeat) {
+            case LIST:
+                return collected == null ? Collections.emptyList() : Collections.unmodifiableList((List<?>) collected);
+            case INTS:
+                return collected == null ? new int[0] : ((Longs) collected).toInts();
+            case LONGS:
+                return collected == null ? new long[0] : ((Longs) collected).toLongs();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Growable buffer of primitive values of a repeatable param.
+     */
+    private static final class Longs {
+        private long[] items = new long[8];
+        private int size = 0;
+
+        private void add(long value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+
+        private int[] toInts() {
+            int[] ints = new int[size];
+            for (int i = 0; i < size; i++) {
+                ints[i] = (int) items[i];
+            }
+            return ints;
+        }
+
+        private long[] toLongs() {
+            return Arrays.copyOf(items, size);
+        }
+    }
+
+    private boolean next(Tokens tokens) {
+        try {
+            return tokens.next();
+        } catch (IllegalArgumentException e) {
+            throw fail(e, "match");
+        }
+    }
+
+    private Object resolve(Option option, String input, String where, String caller) {
+        if (option.mapper instanceof Converter) {
+            return convert(option, (Converter<?>) option.mapper, input, where, caller);
+        }
+        long start = listener == null ? 0L : System.nanoTime();
+        IllegalArgumentException error;
+        try {
+            return option.mapper.apply(input);
+        } catch (IllegalArgumentException e) {
+            error = e;
+        } finally {
+            if (listener != null) {
+                listener.mapped(option.key, System.nanoTime() - start);
+            }
+        }
+        throw fail(failedToResolve(option, error, where), caller);
+    }
+
+    /**
+     * Same as {@link #resolve(Option, String, String, String)}, but an invalid input creates only
+     * the exception passed to the error handler.
+     */
+    private Object convert(Option option, Converter<?> converter, String input, String where, String caller) {
+        long start = listener == null ? 0L : System.nanoTime();
+        Conversion<?> conversion;
+        try {
+            conversion = converter.convert(input, 0, input.length());
+        } finally {
+            if (listener != null) {
+                listener.mapped(option.key, System.nanoTime() - start);
+            }
+        }
+        if (conversion.isValid()) {
+            return conversion.value();
+        }
+        String message = failedToResolveMessage(option, conversion.error(), where);
+        throw fail(new IllegalArgumentException(message), caller);
+    }
+
+    private long resolvePrimitive(Option option, String input, String where) {
+        long start = listener == null ? 0L : System.nanoTime();
+        IllegalArgumentException error;
+        try {
+            return option.parse(input);
+        } catch (IllegalArgumentException e) {
+            error = e;
+        } finally {
+            if (listener != null) {
+                listener.mapped(option.key, System.nanoTime() - start);
+            }
+        }
+        throw fail(failedToResolve(option, error, where), "match");
+    }
+
+    private Object resolveDefault(Option option, String caller) {
+        Object value;
+        long start = listener == null ? 0L : System.nanoTime();
+        IllegalArgumentException error = null;
+        try {
+            value = option.defaultValue == null ? null : option.defaultValue.get();
+        } catch (IllegalArgumentException e) {
+            value = null;
+            error = e;
+        } finally {
+            if (listener != null && option.defaultValue != null) {
+                listener.defaulted(option.key, System.nanoTime() - start);
+            }
+        }
+        if (error != null) {
+            throw fail(error, caller);
+        }
+        if (value == null) {
+            throw fail(new IllegalArgumentException(option.missing()), caller);
+        }
+        return value;
+    }
+
+    private long resolvePrimitiveDefault(Option option) {
+        if (option.defaultValue == null) {
+            throw fail(new IllegalArgumentException(option.missing()), "match");
+        }
+        return option.defaultBits;
+    }
+
+    private static IllegalArgumentException failedToResolve(Option option, IllegalArgumentException e, String where) {
+        return new IllegalArgumentException(failedToResolveMessage(option, e, where), e);
+    }
+
+    private static String failedToResolveMessage(Option option, IllegalArgumentException e, String where) {
+        return failedToResolveMessage(option, e.getMessage(), where);
+    }
+
+    private static String failedToResolveMessage(Option option, String error, String where) {
+        return "Failed to resolve parameter: \"" +
+                option.chr + "\" / \"" + option.name + "\": " + error +
+                (where == null ? "" : " (at " + where + ")");
+    }
+
+    private IllegalStateException fail(RuntimeException e, String caller) {
+        if (listener != null) {
+            listener.failed(e);
+        }
+        errorHandler.accept(e, this);
+        return new IllegalStateException("Error handler did not terminate execution flow of `" + caller + "`.");
+    }
+
+    private static void set(long[] bits, int slot) {
+        bits[slot >>> 6] |= 1L << slot;
+    }
+
+    private static boolean isSet(long[] bits, int slot) {
+        return (bits[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private final class ArrayMatch implements MutableMatch {
+        private final Object[] values;
+        private final String[] inputs;
+        private final AtomicReferenceArray<Object> resolved;
+        private final long[] bits;
+        private final long[] present;
+        private final long[] layered;
+        private ArrayMatch parent;
+        private String command;
+        private ArrayMatch sub;
+        private OptionTokens cursor;
+        private Map<String, Object> all;
+
+        private ArrayMatch() {
+            this(new Object[options.length], new String[options.length],
+                    primitives ? new long[options.length] : null, new long[(options.length + 63) >>> 6]);
+        }
+
+        private ArrayMatch(Object[] values, String[] inputs, long[] bits, long[] present) {
+            this.values = values;
+            this.inputs = inputs;
+            this.resolved = lazy ? new AtomicReferenceArray<>(inputs.length) : null;
+            this.bits = bits;
+            this.present = present;
+            this.layered = layers == null ? null : new long[present.length];
+        }
+
+        private Argumentz owner() {
+            return Argumentz.this;
+        }
+
+        private ArrayMatch reset() {
+            Arrays.fill(values, null);
+            Arrays.fill(inputs, null);
+            if (bits != null) {
+                Arrays.fill(bits, 0L);
+            }
+            Arrays.fill(present, 0L);
+            if (layered != null) {
+                Arrays.fill(layered, 0L);
+            }
+            if (resolved != null) {
+                for (int i = 0; i < resolved.length(); i++) {
+                    resolved.set(i, null);
+                }
+            }
+            parent = null;
+            command = null;
+            sub = null;
+            return this;
+        }
+
+        /**
+         * Cursor over options of the source, kept for the next match when this match is reused.
+         */
+        private OptionTokens cursor(Tokens source) {
+            if (cursor == null) {
+                cursor = new OptionTokens(source);
+                return cursor;
+            }
+            return cursor.reset(source);
+        }
+
+        private Object value(Option option) {
+            if (option.flag) {
+                return isSet(present, option.slot);
+            }
+            if (option.isPrimitive()) {
+                return option.box(bits[option.slot]);
+            }
+            if (resolved == null || option.repeat != null) {
+                return values[option.slot];
+            }
+            Object value = resolved.get(option.slot);
+            if (value == null) {
+                value = resolveLazily(option);
+            }
+            return value == NULL ? null : value;
+        }
+
+        /**
+         * Check if the param had the same input in this match, null input meaning that it was absent.
+         */
+        private boolean hasInput(Option option, String input) {
+            if (input == null) {
+                return !isSet(present, option.slot);
+            }
+            return isSet(present, option.slot) && input.equals(inputs[option.slot]);
+        }
+
+        private synchronized Object resolveLazily(Option option) {
+            Object value = resolved.get(option.slot);
+            if (value == null) {
+                String input = inputs[option.slot];
+                String where = layered != null && isSet(layered, option.slot) ? layers.wheres[option.slot] : null;
+                value = isSet(present, option.slot)
+                        ? resolve(option, input, where, "getAs")
+                        : resolveDefault(option, "getAs");
+                resolved.set(option.slot, value == null ? NULL : value);
+            }
+            return value;
+        }
+
+        @Override
+        public Map<String, Object> all() {
+            if (all == null) {
+                all = new AllView(this);
+            }
+            return all;
+        }
+
+        @Override
+        public String get(String name) {
+            return getAs(String.class, name);
+        }
+
+        @Override
+        public Integer getInt(String name) {
+            return getAs(Integer.class, name);
+        }
+
+        @Override
+        public boolean getFlag(String name) {
+            Option option = names.get(name);
+            if (option == null && parent != null) {
+                return parent.getFlag(name);
+            }
+            return option != null && option.flag && isSet(present, option.slot);
+        }
+
+        @Override
+        public int getIntValue(String name) {
+            Option option = names.get(name);
+            if (option == null && parent != null) {
+                return parent.getIntValue(name);
+            }
+            if (option != null && option.type == int.class) {
+                return (int) bits[option.slot];
+            }
+            return unboxed(Integer.class, int.class, name);
+        }
+
+        @Override
+        public long getLongValue(String name) {
+            Option option = names.get(name);
+            if (option == null && parent != null) {
+                return parent.getLongValue(name);
+            }
+            if (option != null && (option.type == long.class || option.type == int.class)) {
+                return bits[option.slot];
+            }
+            return unboxed(Long.class, long.class, name);
+        }
+
+        @Override
+        public double getDoubleValue(String name) {
+            Option option = names.get(name);
+            if (option == null && parent != null) {
+                return parent.getDoubleValue(name);
+            }
+            if (option != null && option.type == double.class) {
+                return Double.longBitsToDouble(bits[option.slot]);
+            }
+            if (option != null && (option.type == long.class || option.type == int.class)) {
+                return bits[option.slot];
+            }
+            return unboxed(Double.class, double.class, name);
+        }
+
+        @Override
+        public <T> T getAs(Class<T> clazz, String name) {
+            Option option = names.get(name);
+            if (option == null && parent != null) {
+                return parent.getAs(clazz, name);
+            }
+            Object value = option == null || option.flag ? null : value(option);
+            try {
+                return clazz.cast(value);
+            } catch (ClassCastException e) {
+                throw failedToCast(value, clazz, e);
+            }
+        }
+
+        @Override
+        public <T> T bind(Class<T> type) {
+            if (!type.isInterface()) {
+                throw fail(new IllegalArgumentException("Only interfaces can be bound: " + type.getName()), "bind");
+            }
+            Binding binding = BINDINGS.get(type);
+            Object[] values = new Object[binding.methods.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = bound(binding.methods[i], binding.names[i]);
+            }
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    new BoundHandler(binding, values)));
+        }
+
+        private Object bound(Method method, String[] names) {
+            if (method.isDefault()) {
+                throw fail(new IllegalArgumentException("Default methods cannot be bound: " + method), "bind");
+            }
+            if (method.getParameterCount() > 0) {
+                throw fail(new IllegalArgumentException("Bound method must have no parameters: " + method), "bind");
+            }
+            for (ArrayMatch match = this; match != null; match = match.parent) {
+                for (String name : names) {
+                    Option option = match.option(name);
+                    if (option != null) {
+                        return match.bound(method, option);
+                    }
+                }
+            }
+            String message = "No option for method " + method + ", expected one of " + Arrays.toString(names);
+            throw fail(new IllegalArgumentException(message), "bind");
+        }
+
+        private Object bound(Method method, Option option) {
+            Class<?> type = method.getReturnType();
+            Class<?> boxed = boxed(type);
+            Object value = value(option);
+            if (value == null && type.isPrimitive()) {
+                String message = "Method " + method + " cannot return null value of \"" + option.name + "\"";
+                throw fail(new IllegalArgumentException(message), "bind");
+            }
+            if (value != null && !boxed.isInstance(value)) {
+                String message = "Method " + method + " does not fit value of \"" + option.name + "\" of " +
+                        value.getClass().getName();
+                throw fail(new IllegalArgumentException(message), "bind");
+            }
+            return value;
+        }
+
+        private Option option(String name) {
+            return names.get(name);
+        }
+
+        @Override
+        public Source source(String name) {
+            Option option = names.get(name);
+            if (option == null) {
+                return parent == null ? null : parent.source(name);
+            }
+            if (layered != null && isSet(layered, option.slot)) {
+                return layers.sources[option.slot];
+            }
+            return isSet(present, option.slot) ? Source.COMMAND_LINE : Source.DEFAULT;
+        }
+
+        @Override
+        public <T> List<T> getAll(Class<T> clazz, String name) {
+            Option option = names.get(name);
+            if (option == null && parent != null) {
+                return parent.getAll(clazz, name);
+            }
+            if (option == null || option.repeat == Repeat.EACH) {
+                return Collections.emptyList();
+            }
+            if (option.repeat != Repeat.LIST) {
+                T value = getAs(clazz, name);
+                return value == null ? Collections.emptyList() : Collections.singletonList(value);
+            }
+            List<?> list = (List<?>) values[option.slot];
+            for (Object value : list) {
+                if (value != null && !clazz.isInstance(value)) {
+                    throw failedToCast(value, clazz, null);
+                }
+            }
+            @SuppressWarnings("unchecked")
+            List<T> typed = (List<T>) list;
+            return typed;
+        }
+
+        @Override
+        public int[] getInts(String name) {
+            return unboxed(int[].class, int[].class, name).clone();
+        }
+
+        @Override
+        public long[] getLongs(String name) {
+            return unboxed(long[].class, long[].class, name).clone();
+        }
+
+        @Override
+        public String getCommand() {
+            return command;
+        }
+
+        @Override
+        public Match getCommandMatch() {
+            return sub;
+        }
+
+        private <T> T unboxed(Class<T> boxed, Class<?> primitive, String name) {
+            T value = getAs(boxed, name);
+            if (value == null) {
+                throw failedToCast(null, primitive, null);
+            }
+            return value;
+        }
+
+        private IllegalStateException failedToCast(Object value, Class<?> clazz, ClassCastException e) {
+            String message = "Failed to cast value '" + value + "' to class '" + clazz.getSimpleName() + "'.";
+            return fail(new IllegalArgumentException(message, e), "getAs");
+        }
+    }
+
+    private static final ClassValue<Binding> BINDINGS = new ClassValue<Binding>() {
+        @Override
+        protected Binding computeValue(Class<?> type) {
+            return new Binding(type);
+        }
+    };
+
+    /**
+     * Methods of a bound interface with names of options they may read, in the order of preference.
+     * The proxy class passes its own copies of the methods to the handler, always the same ones, which are
+     * added to {@code dispatch} on first call, so that later calls find the index with one lookup by reference.
+     * The map is copied on write and never changed once published.
+     */
+    private static final class Binding {
+        private final Method[] methods;
+        private final String[][] names;
+        private final Map<Method, Integer> index = new HashMap<>();
+        private volatile Map<Method, Integer> dispatch = new IdentityHashMap<>();
+
+        private Binding(Class<?> type) {
+            List<Method> methods = new ArrayList<>();
+            for (Method method : type.getMethods()) {
+                if (!Modifier.isStatic(method.getModifiers())) {
+                    methods.add(method);
+                }
+            }
+            this.methods = methods.toArray(new Method[0]);
+            this.names = new String[this.methods.length][];
+            for (int i = 0; i < this.methods.length; i++) {
+                names[i] = names(this.methods[i].getName());
+                index.put(this.methods[i], i);
+            }
+        }
+
+        private Integer index(Method method) {
+            Integer index = dispatch.get(method);
+            if (index != null) {
+                return index;
+            }
+            index = this.index.get(method);
+            if (index != null) {
+                synchronized (this) {
+                    Map<Method, Integer> dispatch = new IdentityHashMap<>(this.dispatch);
+                    dispatch.put(method, index);
+                    this.dispatch = dispatch;
+                }
+            }
+            return index;
+        }
+
+        private static String[] names(String method) {
+            String name = method;
+            if (name.length() > 3 && name.startsWith("get") && Character.isUpperCase(name.charAt(3))) {
+                name = Character.toLowerCase(name.charAt(3)) + name.substring(4);
+            } else if (name.length() > 2 && name.startsWith("is") && Character.isUpperCase(name.charAt(2))) {
+                name = Character.toLowerCase(name.charAt(2)) + name.substring(3);
+            }
+            StringBuilder kebab = new StringBuilder(name.length() + 4);
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (Character.isUpperCase(c)) {
+                    kebab.append('-').append(Character.toLowerCase(c));
+                } else {
+                    kebab.append(c);
+                }
+            }
+            return kebab.toString().equals(name) ? new String[]{name} : new String[]{kebab.toString(), name};
+        }
+    }
+
+    private static final class BoundHandler implements InvocationHandler {
+        private final Binding binding;
+        private final Object[] values;
+
+        private BoundHandler(Binding binding, Object[] values) {
+            this.binding = binding;
+            this.values = values;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            Integer index = binding.index(method);
+            if (index != null) {
+                return values[index];
+            }
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    StringBuilder sb = new StringBuilder(proxy.getClass().getInterfaces()[0].getSimpleName());
+                    for (int i = 0; i < values.length; i++) {
+                        sb.append(i == 0 ? "{" : ", ").append(binding.methods[i].getName()).append('=')
+                                .append(values[i] instanceof int[] ? Arrays.toString((int[]) values[i])
+                                        : values[i] instanceof long[] ? Arrays.toString((long[]) values[i])
+                                        : values[i]);
+                    }
+                    return sb.append(values.length == 0 ? "{}" : "}").toString();
+            }
+        }
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        if (type == int.class) {
+            return Integer.class;
+        }
+        if (type == long.class) {
+            return Long.class;
+        }
+        if (type == double.class) {
+            return Double.class;
+        }
+        if (type == boolean.class) {
+            return Boolean.class;
+        }
+        if (type == float.class) {
+            return Float.class;
+        }
+        if (type == short.class) {
+            return Short.class;
+        }
+        if (type == byte.class) {
+            return Byte.class;
+        }
+        if (type == char.class) {
+            return Character.class;
+        }
+        return Void.class;
+    }
+
+    /**
+     * Values of a match by short and long names of options, with values of the parent command for names
+     * that the match does not have.
+     */
+    private final class AllView extends AbstractMap<String, Object> {
+        private final ArrayMatch match;
+
+        private AllView(ArrayMatch match) {
+            this.match = match;
+        }
+
+        @Override
+        public Object get(Object key) {
+            Option option = key instanceof String ? keys.get((String) key) : null;
+            if (option != null) {
+                return match.value(option);
+            }
+            return match.parent == null ? null : match.parent.all().get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            if (key instanceof String && keys.get((String) key) != null) {
+                return true;
+            }
+            return match.parent != null && match.parent.all().containsKey(key);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    List<Entry<String, Object>> entries = new ArrayList<>();
+                    for (Option option : options) {
+                        Object value = match.value(option);
+                        entries.add(new SimpleImmutableEntry<>(option.chr, value));
+                        entries.add(new SimpleImmutableEntry<>(option.name, value));
+                    }
+                    if (match.parent != null) {
+                        for (Entry<String, Object> entry : match.parent.all().entrySet()) {
+                            if (keys.get(entry.getKey()) == null) {
+                                entries.add(entry);
+                            }
+                        }
+                    }
+                    return Collections.unmodifiableList(entries).iterator();
+                }
+
+                @Override
+                public int size() {
+                    int size = options.length * 2;
+                    if (match.parent != null) {
+                        for (String key : match.parent.all().keySet()) {
+                            if (keys.get(key) == null) {
+                                size++;
+                            }
+                        }
+                    }
+                    return size;
+                }
+            };
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder() {
+            private final List<Option> options = new ArrayList<>();
+            private final List<Command> commands = new ArrayList<>();
+            private boolean lazy = false;
+            private boolean argumentFiles = false;
+            private boolean abbreviations = false;
+            private final Map<Class<?>, Codec<?>> codecs = new LinkedHashMap<>();
+            private final List<Listener> listeners = new ArrayList<>();
+            private Function<String, String> properties;
+            private Function<String, String> environment;
+            private BiConsumer<RuntimeException, Argumentz> errorHandler = (e, a) -> {
+                throw e;
+            };
 
-        Integer getInt(String name);
+            private void bindParam(char chr, String name, String desc,
+                                   Function<String, ?> mapper, Supplier<?> defaultValue) {
+                options.add(new Option(options.size(), chr, name, desc, false, mapper, defaultValue));
+            }
 
-        boolean getFlag(String name);
+            private void bindPrimitive(char chr, String name, String desc,
+                                       Class<?> type, Object defaultValue, long defaultBits) {
+                Supplier<?> supplier = defaultValue == null ? null : () -> defaultValue;
+                options.add(new Option(options.size(), chr, name, desc, false, null, supplier, type, defaultBits));
+            }
 
-        <T> T getAs(Class<T> clazz, String name);
-    }
+            @SuppressWarnings("unchecked")
+            private void bindRepeatable(char chr, String name, String desc, Repeat repeat,
+                                        Function<String, ?> mapper, Consumer<?> consumer) {
+                options.add(new Option(options.size(), chr, name, desc, repeat, mapper, (Consumer<Object>) consumer));
+            }
 
-    private final Map<String, String> names;
-    private final Map<String, Function<String, ?>> mappers;
-    private final Set<String> flags;
-    private final String usage;
-    private final BiConsumer<RuntimeException, Argumentz> errorHandler;
+            private void bindFlag(char chr, String name, String desc) {
+                options.add(new Option(options.size(), chr, name, desc, true, null, null));
+            }
 
-    public Argumentz(Map<String, String> names,
-                     Map<String, Function<String, ?>> mappers,
-                     Set<String> flags,
-                     String usage,
-                     BiConsumer<RuntimeException, Argumentz> errorHandler) {
-        this.names = names;
-        this.mappers = mappers;
-        this.flags = flags;
-        this.usage = usage;
-        this.errorHandler = errorHandler;
-    }
+            @Override
+            public <T> Builder withParam(char chr, String name, String desc,
+                                         Function<String, T> mapper,
+                                         Supplier<T> defaultValue) {
+                bindParam(chr, name, desc, mapper, defaultValue);
+                return this;
+            }
 
-    public Match match(String[] args) {
-        long depth = Arrays.stream(Thread.currentThread().getStackTrace())
-                .map(StackTraceElement::toString)
-                .filter(s -> s.contains("io.github.sergey_melnychuk.Argumentz.match"))
-                .count();
+            @Override
+            public <T> Builder withParam(char chr, String name, String desc, Function<String, T> mapper) {
+                bindParam(chr, name, desc, mapper, null);
+                return this;
+            }
 
-        if (depth > 1) {
-            throw new IllegalStateException("Infinite recursive call to Argumentz.match detected.");
-        }
+            @Override
+            public Builder withParam(char chr, String name, String desc, Supplier<String> defaultValue) {
+                bindParam(chr, name, desc, ID, defaultValue);
+                return this;
+            }
 
-        final Map<String, Object> values = new HashMap<>();
-        final Set<String> enabled = new HashSet<>();
+            @Override
+            public Builder withParam(char chr, String name, String desc) {
+                bindParam(chr, name, desc, ID, null);
+                return this;
+            }
 
-        for (int i = 0; i < args.length; i++) {
-            String name = args[i];
-            if (flags.contains(name)) {
-                enabled.add(name);
-                enabled.add(names.get(name));
-                continue;
+            @Override
+            public Builder withIntParam(char chr, String name, String desc, int defaultValue) {
+                bindPrimitive(chr, name, desc, int.class, defaultValue, defaultValue);
+                return this;
             }
 
-            if (mappers.containsKey(name) && i < args.length - 1) {
-                i++;
-                String input = args[i];
-                try {
-                    Object value = mappers.get(name).apply(input);
-                    values.put(name, value);
-                    values.put(names.get(name), value);
-                } catch (IllegalArgumentException e) {
-                    errorHandler.accept(e, Argumentz.this);
-                    throw new IllegalStateException("Error handler did not terminate execution flow of `match`.");
-                }
+            @Override
+            public Builder withIntParam(char chr, String name, String desc) {
+                bindPrimitive(chr, name, desc, int.class, null, 0L);
+                return this;
             }
-        }
 
-        for (Map.Entry<String, Function<String, ?>> mapper : mappers.entrySet()) {
-            if (!values.containsKey(mapper.getKey())) {
-                try {
-                    Object value = mapper.getValue().apply(null);
-                    if (value != null) {
-                        values.put(mapper.getKey(), value);
-                    } else {
-                        String chr = mapper.getKey();
-                        String str = names.get(mapper.getKey());
-                        if (chr.length() > str.length()) {
-                            String tmp = str;
-                            str = chr;
-                            chr = tmp;
-                        }
-                        String message = "Missing required parameter: \"" + chr + "\" / \"" + str + "\"";
-                        errorHandler.accept(new IllegalArgumentException(message), Argumentz.this);
-                        throw new IllegalStateException("Error handler did not terminate execution flow of `match`.");
-                    }
-                } catch (IllegalArgumentException e) {
-                    errorHandler.accept(e, Argumentz.this);
-                    throw new IllegalStateException("Error handler did not terminate execution flow of `match`.");
-                }
+            @Override
+            public Builder withLongParam(char chr, String name, String desc, long defaultValue) {
+                bindPrimitive(chr, name, desc, long.class, defaultValue, defaultValue);
+                return this;
             }
-        }
 
-        return new Match() {
-            private final Map<String, Object> all = new HashMap<>(values);
+            @Override
+            public Builder withLongParam(char chr, String name, String desc) {
+                bindPrimitive(chr, name, desc, long.class, null, 0L);
+                return this;
+            }
 
-            {
-                for (String flag : flags) {
-                    all.put(flag, true);
-                }
+            @Override
+            public Builder withDoubleParam(char chr, String name, String desc, double defaultValue) {
+                bindPrimitive(chr, name, desc, double.class, defaultValue, Double.doubleToRawLongBits(defaultValue));
+                return this;
             }
 
             @Override
-            public Map<String, Object> all() {
-                return new HashMap<>(all);
+            public Builder withDoubleParam(char chr, String name, String desc) {
+                bindPrimitive(chr, name, desc, double.class, null, 0L);
+                return this;
             }
 
             @Override
-            public String get(String name) {
-                return getAs(String.class, name);
+            public Builder withFlag(char chr, String name, String desc) {
+                bindFlag(chr, name, desc);
+                return this;
             }
 
             @Override
-            public Integer getInt(String name) {
-                return getAs(Integer.class, name);
+            public <T> Builder withCachedParam(char chr, String name, String desc, Function<String, T> mapper,
+                                               Supplier<T> defaultValue, int maxSize) {
+                bindParam(chr, name, desc, CachedMapper.of(mapper, maxSize), defaultValue);
+                return this;
             }
 
             @Override
-            public boolean getFlag(String name) {
-                return enabled.contains(prefixed(name));
+            public <T> Builder withCachedParam(char chr, String name, String desc,
+                                               Function<String, T> mapper, int maxSize) {
+                bindParam(chr, name, desc, CachedMapper.of(mapper, maxSize), null);
+                return this;
             }
 
             @Override
-            public <T> T getAs(Class<T> clazz, String name) {
-                Object value = values.get(prefixed(name));
-                try {
-                    return clazz.cast(value);
-                } catch (ClassCastException e) {
-                    String message = "Failed to cast value '" + value + "' to class '" + clazz.getSimpleName() + "'.";
-                    errorHandler.accept(new IllegalArgumentException(message, e), Argumentz.this);
-                    throw new IllegalStateException("Error handler did not terminate execution flow of `getAs`.");
-                }
+            public <T> Builder withRepeatableParam(char chr, String name, String desc, Function<String, T> mapper) {
+                bindRepeatable(chr, name, desc, Repeat.LIST, mapper, null);
+                return this;
             }
-        };
-    }
 
-    public static Builder builder() {
-        return new Builder() {
-            private final Set<String> flags = new HashSet<>();
-            private final Map<String, Function<String, ?>> getters = new HashMap<>();
-            private final Map<String, String> names = new HashMap<>();
-            private final StringBuilder sb = new StringBuilder();
-            private BiConsumer<RuntimeException, Argumentz> errorHandler = (e, a) -> {
-                throw e;
-            };
+            @Override
+            public <T> Builder withRepeatableParam(char chr, String name, String desc,
+                                                   Function<String, T> mapper, Consumer<? super T> consumer) {
+                bindRepeatable(chr, name, desc, Repeat.EACH, mapper, consumer);
+                return this;
+            }
 
-            private void bindNames(char chr, String name) {
-                names.put(prefixed(chr), prefixed(name));
-                names.put(prefixed(name), prefixed(chr));
+            @Override
+            public Builder withRepeatableIntParam(char chr, String name, String desc) {
+                bindRepeatable(chr, name, desc, Repeat.INTS, null, null);
+                return this;
             }
 
-            private void saveParamUsage(char chr, String name, String desc, Function<String, ?> getter) {
-                sb.append(String.format("%7.14s %-15.30s %-15.60s", prefixed(chr), prefixed(name), desc));
-                try {
-                    Object val = getter.apply(null);
-                    if (val != null) {
-                        sb.append(" (default: ");
-                        sb.append(val);
-                        sb.append(")");
-                    } else {
-                        sb.append(" (required)");
-                    }
-                } catch (Exception e) {
-                    sb.append(" (required)");
-                }
-                sb.append("\n");
+            @Override
+            public Builder withRepeatableLongParam(char chr, String name, String desc) {
+                bindRepeatable(chr, name, desc, Repeat.LONGS, null, null);
+                return this;
             }
 
-            private void saveFlagUsage(char chr, String name, String desc) {
-                sb.append(String.format("%7.14s %-15.30s %-15.50s", prefixed(chr), prefixed(name), desc));
+            @Override
+            public Builder withCommand(String name, String desc, Supplier<Argumentz> parser) {
+                commands.add(new Command(name, desc, parser));
+                return this;
             }
 
-            private void bindGetter(char chr, String name, String desc, Function<String, ?> getter) {
-                saveParamUsage(chr, name, desc, getter);
-                bindNames(chr, name);
-                getters.put(prefixed(chr), getter);
-                getters.put(prefixed(name), getter);
+            @Override
+            public Builder withCommand(String name, Supplier<Argumentz> parser) {
+                return withCommand(name, "", parser);
             }
 
-            private void bindFlag(char chr, String name, String desc) {
-                saveFlagUsage(chr, name, desc);
-                bindNames(chr, name);
-                flags.add(prefixed(chr));
-                flags.add(prefixed(name));
+            @Override
+            public Builder withErrorHandler(BiConsumer<RuntimeException, Argumentz> errorHandler) {
+                this.errorHandler = errorHandler;
+                return this;
             }
 
-            private <T> T applyOrThrow(String value, char chr, String name, Function<String, T> mapper) {
-                if (value == null) {
-                    String msg = "Missing required parameter: \"" + prefixed(chr) + "\" / \"" + prefixed(name) + "\"";
-                    throw new IllegalArgumentException(msg);
-                }
-                try {
-                    return mapper.apply(value);
-                } catch (IllegalArgumentException e) {
-                    String msg = "Failed to resolve parameter: \"" +
-                            prefixed(chr) + "\" / \"" + prefixed(name) + "\": " + e.getMessage();
-                    throw new IllegalArgumentException(msg, e);
-                }
+            @Override
+            public Builder withLazyEvaluation() {
+                this.lazy = true;
+                return this;
             }
 
             @Override
-            public <T> Builder withParam(char chr, String name, String desc,
-                                         Function<String, T> mapper,
-                                         Supplier<T> defaultValue) {
-                bindGetter(chr, name, desc,
-                        value -> Optional.ofNullable(value)
-                                .map(v -> applyOrThrow(v, chr, name, mapper))
-                                .orElseGet(defaultValue));
+            public <T> Builder withCodec(Class<T> type, Codec<T> codec) {
+                codecs.put(Objects.requireNonNull(type), Objects.requireNonNull(codec));
                 return this;
             }
 
             @Override
-            public <T> Builder withParam(char chr, String name, String desc, Function<String, T> mapper) {
-                bindGetter(chr, name, desc, value -> applyOrThrow(value, chr, name, mapper));
+            public Builder withEnvironment(String prefix) {
+                Objects.requireNonNull(prefix);
+                return withEnvironment(name -> prefix + name.toUpperCase(Locale.ROOT).replace('-', '_'));
+            }
+
+            @Override
+            public Builder withEnvironment(Function<String, String> naming) {
+                this.environment = Objects.requireNonNull(naming);
                 return this;
             }
 
             @Override
-            public Builder withParam(char chr, String name, String desc, Supplier<String> defaultValue) {
-                bindGetter(chr, name, desc, value -> Optional.ofNullable(value).orElseGet(defaultValue));
+            public Builder withSystemProperties(String prefix) {
+                Objects.requireNonNull(prefix);
+                return withSystemProperties(name -> prefix + name);
+            }
+
+            @Override
+            public Builder withSystemProperties(Function<String, String> naming) {
+                this.properties = Objects.requireNonNull(naming);
                 return this;
             }
 
             @Override
-            public Builder withParam(char chr, String name, String desc) {
-                bindGetter(chr, name, desc, ID);
+            public Builder withAbbreviations() {
+                this.abbreviations = true;
                 return this;
             }
 
             @Override
-            public Builder withFlag(char chr, String name, String desc) {
-                bindFlag(chr, name, desc);
+            public Builder withArgumentFiles() {
+                this.argumentFiles = true;
                 return this;
             }
 
             @Override
-            public Builder withErrorHandler(BiConsumer<RuntimeException, Argumentz> errorHandler) {
-                this.errorHandler = errorHandler;
+            public Builder withListener(Listener listener) {
+                listeners.add(Objects.requireNonNull(listener));
                 return this;
             }
 
             @Override
             public Argumentz build() {
-                return new Argumentz(names, getters, flags, sb.toString(), errorHandler);
+                Listener listener = listeners.isEmpty() ? null
+                        : listeners.size() == 1 ? listeners.get(0)
+                        : new Listeners(listeners.toArray(new Listener[0]));
+                Option[] options = this.options.toArray(new Option[0]);
+                Layers layers = properties == null && environment == null ? null
+                        : Layers.of(options, properties, environment);
+                return new Argumentz(options, commands.toArray(new Command[0]),
+                        errorHandler, lazy, argumentFiles, listener, abbreviations, codecs, layers);
             }
         };
     }
 
+    private static final int MAGIC = 0x415A; // "AZ"
+    private static final int VERSION = 1;
+
+    private static final int NULL_VALUE = 0;
+    private static final int STRING = 1;
+    private static final int INT = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int BOOLEAN = 5;
+    private static final int INTS = 6;
+    private static final int LONGS = 7;
+    private static final int LIST = 8;
+    private static final int CUSTOM = 9;
+
+    /**
+     * Binary form of the match, to be loaded with {@link #deserialize(byte[])} by an instance with the same spec
+     * (for example in a forked worker) without running mappers or default value suppliers again.
+     * Holds a fingerprint of the spec, presence of options, raw bits of primitive params and the value
+     * of every other param (including defaults), and the same for the match of the subcommand.
+     * Small enough to pass around Base64-encoded in an environment variable.
+     *
+     * @throws IllegalArgumentException when the match was not created by this instance,
+     * or a value has a type without a codec, see {@link Builder#withCodec(Class, Codec)}
+     */
+    public byte[] serialize(Match match) {
+        if (!owns(match)) {
+            throw new IllegalArgumentException("Match was not created by this instance.");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeShort(MAGIC);
+            out.writeByte(VERSION);
+            write((ArrayMatch) match, out);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to serialize match: " + e.getMessage(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Load the match written by {@link #serialize(Match)} of an instance with the same spec.
+     *
+     * @throws IllegalArgumentException when the data is malformed or was written for another spec
+     */
+    public Match deserialize(byte[] data) {
+        return deserialize(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Same as {@link #deserialize(byte[])} for the data between position and limit of the buffer
+     * (which may be a memory-mapped file). The position of the buffer is not changed.
+     */
+    public Match deserialize(ByteBuffer data) {
+        ByteBuffer buffer = data.duplicate();
+        try (DataInputStream in = new DataInputStream(new InputStream() {
+            @Override
+            public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (!buffer.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, buffer.remaining());
+                buffer.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return buffer.remaining();
+            }
+        })) {
+            if (in.readUnsignedShort() != MAGIC || in.readUnsignedByte() != VERSION) {
+                throw new IllegalArgumentException("Not a serialized match, or unsupported version.");
+            }
+            return read(in);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to deserialize match: " + e.getMessage(), e);
+        }
+    }
+
+    private void write(ArrayMatch match, DataOutputStream out) throws IOException {
+        out.writeLong(fingerprint());
+        for (long word : match.present) {
+            writeVarLong(out, word);
+        }
+        for (Option option : options) {
+            if (option.flag) {
+                continue;
+            }
+            if (option.isPrimitive()) {
+                writeVarLong(out, match.bits[option.slot]);
+            } else {
+                writeValue(option, match.value(option), out);
+            }
+        }
+        if (match.command == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            out.writeUTF(match.command);
+            commandNames.get(match.command).parser().write(match.sub, out);
+        }
+    }
+
+    private ArrayMatch read(DataInputStream in) throws IOException {
+        if (in.readLong() != fingerprint()) {
+            throw new IllegalArgumentException("Serialized match does not fit this spec (fingerprint mismatch).");
+        }
+        ArrayMatch match = new ArrayMatch();
+        for (int i = 0; i < match.present.length; i++) {
+            match.present[i] = readVarLong(in);
+        }
+        for (Option option : options) {
+            if (option.flag) {
+                continue;
+            }
+            if (option.isPrimitive()) {
+                match.bits[option.slot] = readVarLong(in);
+            } else {
+                Object value = readValue(in);
+                match.values[option.slot] = value;
+                if (match.resolved != null && option.repeat == null) {
+                    match.resolved.set(option.slot, value == null ? NULL : value);
+                }
+            }
+        }
+        if (in.readBoolean()) {
+            String name = in.readUTF();
+            Command command = commandNames == null ? null : commandNames.get(name);
+            if (command == null) {
+                throw new IllegalArgumentException("Serialized match has unknown command: \"" + name + "\"");
+            }
+            ArrayMatch sub = command.parser().read(in);
+            sub.parent = match;
+            match.command = command.name;
+            match.sub = sub;
+        }
+        return match;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeValue(Option option, Object value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL_VALUE);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            writeVarLong(out, (Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(out, (Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof int[]) {
+            int[] ints = (int[]) value;
+            out.writeByte(INTS);
+            writeVarLong(out, ints.length);
+            for (int i : ints) {
+                writeVarLong(out, i);
+            }
+        } else if (value instanceof long[]) {
+            long[] longs = (long[]) value;
+            out.writeByte(LONGS);
+            writeVarLong(out, longs.length);
+            for (long l : longs) {
+                writeVarLong(out, l);
+            }
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(LIST);
+            writeVarLong(out, list.size());
+            for (Object item : list) {
+                writeValue(option, item, out);
+            }
+        } else {
+            for (int i = 0; i < codecs.length; i++) {
+                if (codecTypes[i].isInstance(value)) {
+                    out.writeByte(CUSTOM);
+                    writeVarLong(out, i);
+                    ((Codec<Object>) codecs[i]).write(value, out);
+                    return;
+                }
+            }
+            throw new IllegalArgumentException("No codec for value of parameter \"" + option.name + "\": " +
+                    value.getClass().getName());
+        }
+    }
+
+    private Object readValue(DataInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL_VALUE:
+                return null;
+            case STRING:
+                return in.readUTF();
+            case INT:
+                return (int) readVarLong(in);
+            case LONG:
+                return readVarLong(in);
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case INTS: {
+                int[] ints = new int[readLength(in)];
+                for (int i = 0; i < ints.length; i++) {
+                    ints[i] = (int) readVarLong(in);
+                }
+                return ints;
+            }
+            case LONGS: {
+                long[] longs = new long[readLength(in)];
+                for (int i = 0; i < longs.length; i++) {
+                    longs[i] = readVarLong(in);
+                }
+                return longs;
+            }
+            case LIST: {
+                int size = readLength(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return Collections.unmodifiableList(list);
+            }
+            case CUSTOM: {
+                int index = (int) readVarLong(in);
+                if (index < 0 || index >= codecs.length) {
+                    throw new IllegalArgumentException("Serialized match refers to unknown codec: " + index);
+                }
+                try {
+                    return codecs[index].read(in);
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("Failed to deserialize match: " + e.getMessage(), e);
+                }
+            }
+            default:
+                throw new IllegalArgumentException("Serialized match has unknown value tag: " + tag);
+        }
+    }
+
+    /**
+     * Number of elements that follow, each taking at least one byte, so it cannot exceed the bytes left.
+     */
+    private static int readLength(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > in.available()) {
+            throw new IllegalArgumentException("Serialized match has invalid length: " + length);
+        }
+        return (int) length;
+    }
+
+    /**
+     * Zig-zag encoded variable-length long, 1 byte for small values of either sign.
+     */
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new IllegalArgumentException("Serialized match has malformed number.");
+    }
+
+    /**
+     * 64-bit FNV-1a hash of names and kinds of options, commands and codecs, which identifies the spec.
+     */
+    private long fingerprint() {
+        StringBuilder sb = new StringBuilder();
+        for (Option option : options) {
+            sb.append(option.chr).append(' ').append(option.name).append(' ')
+                    .append(option.flag ? "flag" : option.type != null ? option.type.getName()
+                            : option.repeat != null ? option.repeat.name() : "param")
+                    .append('\n');
+        }
+        for (Command command : commands) {
+            sb.append(command.name).append('\n');
+        }
+        for (Class<?> type : codecTypes) {
+            sb.append(type.getName()).append('\n');
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < sb.length(); i++) {
+            hash ^= sb.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
     public void printUsage(PrintStream ps) {
-        ps.println("Usage: java -cp <...> <MainClass> [ARGUMENTS]\n" + usage);
+        ps.print(usage.render());
+    }
+
+    /**
+     * Option names (short and long) and command names starting with {@code partial}, in lexicographic order.
+     * Takes time proportional to the length of {@code partial} and the number of candidates,
+     * regardless of the total number of options.
+     */
+    public List<String> complete(String partial) {
+        return prefixes().keys(partial);
+    }
+
+    /**
+     * Completion script for the shell, to be sourced (bash) or put on {@code $fpath} as {@code _<program>} (zsh).
+     */
+    public String completionScript(Shell shell, String program) {
+        String function = "_" + program.replaceAll("[^A-Za-z0-9_]", "_");
+        StringBuilder sb = new StringBuilder();
+        if (shell == Shell.BASH) {
+            StringBuilder words = new StringBuilder();
+            for (String name : complete("")) {
+                words.append(words.length() == 0 ? "" : " ").append(name);
+            }
+            sb.append(function).append("() {\n");
+            sb.append("    local cur=\"${COMP_WORDS[COMP_CWORD]}\"\n");
+            sb.append("    COMPREPLY=( $(compgen -W \"").append(words).append("\" -- \"$cur\") )\n");
+            sb.append("}\n");
+            sb.append("complete -F ").append(function).append(" ").append(program).append("\n");
+        } else {
+            sb.append("#compdef ").append(program).append("\n");
+            sb.append("_arguments");
+            for (Option option : options) {
+                if (option.repeat != null) {
+                    sb.append(" \\\n    '*'");
+                } else {
+                    sb.append(" \\\n    '(").append(option.chr).append(" ").append(option.name).append(")'");
+                }
+                sb.append("{").append(option.chr).append(",").append(option.name).append("}");
+                sb.append("'[").append(zshEscape(option.desc)).append("]");
+                if (!option.flag) {
+                    sb.append(":").append(option.key).append(":");
+                }
+                sb.append("'");
+            }
+            if (commands.length > 0) {
+                sb.append(" \\\n    '1:command:(");
+                for (int i = 0; i < commands.length; i++) {
+                    sb.append(i == 0 ? "" : " ").append(commands[i].name);
+                }
+                sb.append(")'");
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    private static String zshEscape(String desc) {
+        return desc.replace("\\", "\\\\").replace("]", "\\]").replace("'", "'\\''");
+    }
+
+    /**
+     * Values of options from system properties and environment variables, looked up once when the instance
+     * is built (one lookup per option in a snapshot of each), so a match only reads them by slot.
+     */
+    private static final class Layers {
+        private final String[] values;
+        private final String[] wheres;
+        private final Source[] sources;
+
+        private Layers(int size) {
+            this.values = new String[size];
+            this.wheres = new String[size];
+            this.sources = new Source[size];
+        }
+
+        private static Layers of(Option[] options,
+                                 Function<String, String> properties, Function<String, String> environment) {
+            Properties props = properties == null ? null : System.getProperties();
+            Map<String, String> env = environment == null ? null : System.getenv();
+            Layers layers = new Layers(options.length);
+            for (Option option : options) {
+                String name = option.key;
+                String key = props == null ? null : properties.apply(name);
+                String value = key == null ? null : props.getProperty(key);
+                if (value != null) {
+                    layers.put(option, value, "property " + key, Source.PROPERTY);
+                    continue;
+                }
+                key = env == null ? null : environment.apply(name);
+                value = key == null ? null : env.get(key);
+                if (value != null) {
+                    layers.put(option, value, "env " + key, Source.ENVIRONMENT);
+                }
+            }
+            return layers;
+        }
+
+        private void put(Option option, String value, String where, Source source) {
+            values[option.slot] = value;
+            wheres[option.slot] = where;
+            sources[option.slot] = source;
+        }
+
+        private boolean flag(Option option) {
+            return "true".equalsIgnoreCase(values[option.slot]);
+        }
+
+        private String invalidFlag(Option option) {
+            return "Failed to resolve flag: \"" + option.chr + "\" / \"" + option.name +
+                    "\": expected true or false, got \"" + values[option.slot] + "\" (at " + wheres[option.slot] + ")";
+        }
+    }
+
+    /**
+     * Usage text is rendered on the first {@link #printUsage(PrintStream)} and cached, so default values
+     * shown in it are resolved at most once per instance, and not at all unless usage is printed.
+     */
+    private static final class Usage {
+        private final Option[] options;
+        private final Command[] commands;
+        private final Layers layers;
+        private volatile String text;
+
+        private Usage(Option[] options, Command[] commands, Layers layers) {
+            this.options = options;
+            this.commands = commands;
+            this.layers = layers;
+        }
+
+        private String render() {
+            String text = this.text;
+            if (text == null) {
+                synchronized (this) {
+                    text = this.text;
+                    if (text == null) {
+                        text = renderNow();
+                        this.text = text;
+                    }
+                }
+            }
+            return text;
+        }
+
+        private String renderNow() {
+            StringBuilder sb = new StringBuilder("Usage: java -cp <...> <MainClass> [ARGUMENTS]\n");
+            for (Option option : options) {
+                if (option.flag) {
+                    sb.append(String.format("%7.14s %-15.30s %-15.50s", option.chr, option.name, option.desc));
+                } else {
+                    sb.append(String.format("%7.14s %-15.30s %-15.60s", option.chr, option.name, option.desc));
+                    Object value = defaultValue(option);
+                    if (option.repeat != null) {
+                        sb.append(" (repeatable)");
+                    } else if (value != null) {
+                        sb.append(" (default: ");
+                        sb.append(value);
+                        sb.append(")");
+                    } else {
+                        sb.append(" (required)");
+                    }
+                }
+                if (layers != null && layers.wheres[option.slot] != null) {
+                    sb.append(" [from ").append(layers.wheres[option.slot]).append("]");
+                }
+                sb.append("\n");
+            }
+            if (commands.length > 0) {
+                sb.append("Commands:\n");
+                for (Command command : commands) {
+                    sb.append(String.format("%7s %-15.30s %-15.60s", "", command.name, command.desc)).append("\n");
+                }
+            }
+            return sb.toString();
+        }
+
+        private static Object defaultValue(Option option) {
+            try {
+                return option.defaultValue == null ? null : option.defaultValue.get();
+            } catch (Exception e) {
+                return null;
+            }
+        }
     }
 
     private static String prefixed(char chr) {
@@ -0,0 +1,148 @@
+package io.github.sergey_melnychuk;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Mapper that remembers results of the wrapped one for the most recently used inputs, for mappers that do
+ * real work (read files, resolve addresses, compile patterns) on values that repeat across matches:
+ *
+ * <pre>
+ * CachedMapper&lt;Pattern&gt; pattern = CachedMapper.of(Pattern::compile, 256);
+ * Argumentz argumentz = Argumentz.builder()
+ *         .withParam('f', "filter", "filter expression", pattern)
+ *         .build();
+ * </pre>
+ * <p>
+ * Thread-safe, as long as the wrapped mapper is. Failed conversions and null results are never cached,
+ * so a failing input reaches the error handler every time. Cached values are shared between matches,
+ * so they should be immutable.
+ * <p>
+ * The cache is striped: inputs are spread by hash over up to 16 access-ordered segments, each with a lock
+ * of its own and an equal share of {@code maxSize}, so threads contend only when their inputs fall into
+ * the same segment, and a hit or an eviction costs the same at any size. The least recently used input
+ * of its segment is evicted first, which is exact LRU for small caches (that have a single segment)
+ * and close to it for the larger ones. The wrapped mapper is called outside of the lock, and concurrent
+ * misses of the same input may call it more than once.
+ */
+public final class CachedMapper<T> implements Function<String, T> {
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_SIZE = 16;
+
+    private final Function<String, T> mapper;
+    private final Segment<T>[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static final class Segment<T> extends LinkedHashMap<String, T> {
+        private final int maxSize;
+        private final LongAdder evictions;
+
+        private Segment(int maxSize, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+            if (size() > maxSize) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private CachedMapper(Function<String, T> mapper, int maxSize) {
+        this.mapper = mapper;
+        int count = 1;
+        while (count < MAX_SEGMENTS && count * 2 * MIN_SEGMENT_SIZE <= maxSize) {
+            count *= 2;
+        }
+        this.segments = (Segment<T>[]) new Segment<?>[count];
+        for (int i = 0; i < count; i++) {
+            // the first segments take the remainder, so that sizes add up to maxSize
+            segments[i] = new Segment<>(maxSize / count + (i < maxSize % count ? 1 : 0), evictions);
+        }
+    }
+
+    /**
+     * @param maxSize maximum number of cached results, least recently used ones are evicted first
+     */
+    public static <T> CachedMapper<T> of(Function<String, T> mapper, int maxSize) {
+        Objects.requireNonNull(mapper);
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        return new CachedMapper<>(mapper, maxSize);
+    }
+
+    private Segment<T> segment(String input) {
+        int h = input.hashCode();
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    @Override
+    public T apply(String input) {
+        Segment<T> segment = segment(input);
+        T value;
+        synchronized (segment) {
+            value = segment.get(input);
+        }
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+
+        misses.increment();
+        value = mapper.apply(input);
+        if (value != null) {
+            synchronized (segment) {
+                segment.put(input, value);
+            }
+        }
+        return value;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<T> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment<T> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CachedMapper{size=" + size() + ", hits=" + hits() + ", misses=" + misses() +
+                ", evictions=" + evictions() + "}";
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.sergey_melnychuk;
+
+/**
+ * Result of a {@link Converter}: either a value (which may be null) or an error message,
+ * so that invalid input is reported without throwing and catching an exception.
+ */
+public final class Conversion<T> {
+    private final T value;
+    private final String error;
+
+    private Conversion(T value, String error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    public static <T> Conversion<T> of(T value) {
+        return new Conversion<>(value, null);
+    }
+
+    /**
+     * Failed conversion of {@code text}, with the message {@code Invalid <kind>: "<text>"}
+     * used by all the built-in converters.
+     */
+    public static <T> Conversion<T> invalid(String kind, CharSequence text, int from, int to) {
+        String message = "Invalid " + kind + ": \"" + text.subSequence(from, to) + "\"";
+        return new Conversion<>(null, message);
+    }
+
+    /**
+     * Failed conversion with the message as is, for messages that must match those of exceptions.
+     */
+    static <T> Conversion<T> failed(String message) {
+        return new Conversion<>(null, message);
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+
+    /**
+     * Converted value, or null when the conversion failed.
+     */
+    public T value() {
+        return value;
+    }
+
+    /**
+     * Error message, or null when the conversion succeeded.
+     */
+    public String error() {
+        return error;
+    }
+
+    public T orElse(T other) {
+        return error == null ? value : other;
+    }
+
+    @Override
+    public String toString() {
+        return error == null ? "Conversion{" + value + "}" : "Conversion{error=" + error + "}";
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.sergey_melnychuk;
+
+import java.util.function.Function;
+
+/**
+ * Mapper that converts a range of characters and reports invalid input as a {@link Conversion} result instead
+ * of throwing. {@link Argumentz} uses {@link #convert(CharSequence, int, int)} directly, so invalid input
+ * creates a single exception (the one passed to the error handler) and none at all in
+ * {@link Argumentz#check(String[])}. See {@link Converters} for the built-in ones.
+ */
+@FunctionalInterface
+public interface Converter<T> extends Function<String, T> {
+
+    Conversion<T> convert(CharSequence text, int from, int to);
+
+    default Conversion<T> convert(CharSequence text) {
+        return convert(text, 0, text.length());
+    }
+
+    /**
+     * @throws IllegalArgumentException with the error message of the conversion when the text is not valid
+     */
+    @Override
+    default T apply(String text) {
+        Conversion<T> conversion = convert(text, 0, text.length());
+        if (!conversion.isValid()) {
+            throw new IllegalArgumentException(conversion.error());
+        }
+        return conversion.value();
+    }
+}
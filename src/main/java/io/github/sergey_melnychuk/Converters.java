@@ -0,0 +1,419 @@
+package io.github.sergey_melnychuk;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+
+/**
+ * Built-in {@link Converter converters} that parse directly from a range of characters and never throw
+ * on invalid input, reporting it as {@code Invalid <kind>: "<text>"} instead:
+ *
+ * <pre>
+ * Argumentz argumentz = Argumentz.builder()
+ *         .withParam('t', "timeout", "request timeout", Converters.DURATION, () -&gt; Duration.ofSeconds(5))
+ *         .withParam('b', "buffer", "buffer size in bytes", Converters.SIZE, () -&gt; 65536L)
+ *         .withParam('c', "connect", "address to connect to", Converters.HOST_PORT)
+ *         .build();
+ * </pre>
+ */
+public final class Converters {
+
+    /**
+     * Decimal int with an optional sign, same as {@link Integer#parseInt(String)}.
+     */
+    public static final Converter<Integer> INT = Converters::toInt;
+
+    /**
+     * Decimal long with an optional sign, same as {@link Long#parseLong(String)}.
+     */
+    public static final Converter<Long> LONG = Converters::toLong;
+
+    /**
+     * Decimal double with an optional sign, fraction and exponent, or {@code NaN} or {@code Infinity}.
+     * Unlike {@link Double#parseDouble(String)}, hexadecimal notation, type suffixes and surrounding
+     * whitespace are not accepted. Numbers with up to 15 significant digits and a small exponent
+     * are converted without creating a string, and are correctly rounded all the same.
+     */
+    public static final Converter<Double> DOUBLE = Converters::toDouble;
+
+    /**
+     * {@code true} or {@code false} in any case.
+     */
+    public static final Converter<Boolean> BOOLEAN = Converters::toBoolean;
+
+    /**
+     * One or more whole numbers with units {@code ns}, {@code us}, {@code ms}, {@code s}, {@code m}, {@code h}
+     * or {@code d}, such as {@code 250ms}, {@code 5m} or {@code 1h30m}. Up to about 292 years.
+     */
+    public static final Converter<Duration> DURATION = Converters::toDuration;
+
+    /**
+     * Number of bytes as a whole number with an optional binary unit {@code k}, {@code m}, {@code g}, {@code t}
+     * or {@code p} in any case, optionally followed by {@code b} or {@code ib}: {@code 512}, {@code 64m},
+     * {@code 2GB}, {@code 16KiB}.
+     */
+    public static final Converter<Long> SIZE = Converters::toSize;
+
+    /**
+     * Unresolved address as {@code host:port}, or {@code [address]:port} for IPv6 literals,
+     * with a port from 0 to 65535. No name lookups are done.
+     */
+    public static final Converter<InetSocketAddress> HOST_PORT = Converters::toHostPort;
+
+    private static final Conversion<Boolean> TRUE = Conversion.of(true);
+    private static final Conversion<Boolean> FALSE = Conversion.of(false);
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private Converters() {
+    }
+
+    /**
+     * Constant of the enum by name in any case, with dashes standing for underscores,
+     * so that {@code --level=read-only} selects {@code READ_ONLY}.
+     */
+    public static <E extends Enum<E>> Converter<E> enumOf(Class<E> type) {
+        E[] constants = type.getEnumConstants();
+        @SuppressWarnings("unchecked")
+        Conversion<E>[] results = (Conversion<E>[]) new Conversion<?>[constants.length];
+        for (int i = 0; i < constants.length; i++) {
+            results[i] = Conversion.of(constants[i]);
+        }
+        String kind = type.getSimpleName();
+        return (text, from, to) -> {
+            for (int i = 0; i < constants.length; i++) {
+                if (isConstant(constants[i].name(), text, from, to)) {
+                    return results[i];
+                }
+            }
+            return Conversion.invalid(kind, text, from, to);
+        };
+    }
+
+    private static boolean isConstant(String name, CharSequence text, int from, int to) {
+        if (name.length() != to - from) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = text.charAt(from + i);
+            char n = name.charAt(i);
+            if (c != n && Character.toUpperCase(c) != Character.toUpperCase(n) && !(c == '-' && n == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static Conversion<Integer> toInt(CharSequence text, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        if (i == to) {
+            return Conversion.invalid("int", text, from, to);
+        }
+        // accumulated negatively, as the negative range is larger
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int min = limit / 10;
+        int result = 0;
+        for (; i < to; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < min || result * 10 < limit + digit) {
+                return Conversion.invalid("int", text, from, to);
+            }
+            result = result * 10 - digit;
+        }
+        return Conversion.of(negative ? result : -result);
+    }
+
+    static Conversion<Long> toLong(CharSequence text, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        if (i == to) {
+            return Conversion.invalid("long", text, from, to);
+        }
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long min = limit / 10;
+        long result = 0;
+        for (; i < to; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < min || result * 10 < limit + digit) {
+                return Conversion.invalid("long", text, from, to);
+            }
+            result = result * 10 - digit;
+        }
+        return Conversion.of(negative ? result : -result);
+    }
+
+    static Conversion<Double> toDouble(CharSequence text, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        if (is("NaN", text, i, to)) {
+            return Conversion.of(Double.NaN);
+        }
+        if (is("Infinity", text, i, to)) {
+            return Conversion.of(negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY);
+        }
+
+        long mantissa = 0;
+        int significant = 0;
+        int scale = 0;
+        boolean digits = false;
+        for (; i < to && isDigit(text.charAt(i)); i++) {
+            digits = true;
+            int digit = text.charAt(i) - '0';
+            if (significant >= 18) {
+                significant++;
+                scale++;
+            } else if (mantissa != 0 || digit != 0) {
+                mantissa = mantissa * 10 + digit;
+                significant++;
+            }
+        }
+        if (i < to && text.charAt(i) == '.') {
+            for (i++; i < to && isDigit(text.charAt(i)); i++) {
+                digits = true;
+                int digit = text.charAt(i) - '0';
+                if (significant >= 18) {
+                    significant++;
+                } else {
+                    mantissa = mantissa * 10 + digit;
+                    scale--;
+                    if (mantissa != 0) {
+                        significant++;
+                    }
+                }
+            }
+        }
+        if (!digits) {
+            return Conversion.invalid("double", text, from, to);
+        }
+        if (i < to && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+                negativeExponent = text.charAt(i) == '-';
+                i++;
+            }
+            if (i == to) {
+                return Conversion.invalid("double", text, from, to);
+            }
+            int exponent = 0;
+            for (; i < to && isDigit(text.charAt(i)); i++) {
+                // large enough to overflow or underflow any double, small enough not to overflow the int
+                exponent = Math.min(exponent * 10 + text.charAt(i) - '0', 100_000);
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        if (i != to) {
+            return Conversion.invalid("double", text, from, to);
+        }
+
+        if (mantissa == 0 && significant == 0) {
+            return Conversion.of(negative ? -0.0 : 0.0);
+        }
+        if (significant <= 15 && scale >= -22 && scale <= 22) {
+            // both the mantissa and the power of ten are exact, so a single operation rounds correctly
+            double value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+            return Conversion.of(negative ? -value : value);
+        }
+        return Conversion.of(Double.parseDouble(text.subSequence(from, to).toString()));
+    }
+
+    static Conversion<Boolean> toBoolean(CharSequence text, int from, int to) {
+        if (is("true", text, from, to)) {
+            return TRUE;
+        }
+        if (is("false", text, from, to)) {
+            return FALSE;
+        }
+        return Conversion.invalid("boolean", text, from, to);
+    }
+
+    static Conversion<Duration> toDuration(CharSequence text, int from, int to) {
+        if (from == to) {
+            return Conversion.invalid("duration", text, from, to);
+        }
+        long total = 0;
+        int i = from;
+        while (i < to) {
+            int start = i;
+            long amount = 0;
+            for (; i < to && isDigit(text.charAt(i)); i++) {
+                if (amount > (Long.MAX_VALUE - 9) / 10) {
+                    return Conversion.invalid("duration", text, from, to);
+                }
+                amount = amount * 10 + text.charAt(i) - '0';
+            }
+            int unit = i;
+            while (i < to && text.charAt(i) >= 'a' && text.charAt(i) <= 'z') {
+                i++;
+            }
+            long nanos = unitNanos(text, unit, i);
+            if (unit == start || nanos == 0 || amount > (Long.MAX_VALUE - total) / nanos) {
+                return Conversion.invalid("duration", text, from, to);
+            }
+            total += amount * nanos;
+        }
+        return Conversion.of(Duration.ofSeconds(total / NANOS_PER_SECOND, total % NANOS_PER_SECOND));
+    }
+
+    private static long unitNanos(CharSequence text, int from, int to) {
+        switch (to - from) {
+            case 1:
+                switch (text.charAt(from)) {
+                    case 's':
+                        return NANOS_PER_SECOND;
+                    case 'm':
+                        return 60 * NANOS_PER_SECOND;
+                    case 'h':
+                        return 3600 * NANOS_PER_SECOND;
+                    case 'd':
+                        return 86400 * NANOS_PER_SECOND;
+                    default:
+                        return 0;
+                }
+            case 2:
+                if (text.charAt(from + 1) != 's') {
+                    return 0;
+                }
+                switch (text.charAt(from)) {
+                    case 'n':
+                        return 1;
+                    case 'u':
+                        return 1000;
+                    case 'm':
+                        return 1000_000;
+                    default:
+                        return 0;
+                }
+            default:
+                return 0;
+        }
+    }
+
+    static Conversion<Long> toSize(CharSequence text, int from, int to) {
+        int i = from;
+        long amount = 0;
+        for (; i < to && isDigit(text.charAt(i)); i++) {
+            if (amount > (Long.MAX_VALUE - 9) / 10) {
+                return Conversion.invalid("size", text, from, to);
+            }
+            amount = amount * 10 + text.charAt(i) - '0';
+        }
+        if (i == from) {
+            return Conversion.invalid("size", text, from, to);
+        }
+        int shift = 0;
+        if (i < to) {
+            shift = unitShift(text.charAt(i));
+            if (shift > 0) {
+                i++;
+                if (i < to && Character.toLowerCase(text.charAt(i)) == 'i') {
+                    i++;
+                    if (i == to) {
+                        return Conversion.invalid("size", text, from, to);
+                    }
+                }
+            }
+            if (i < to && Character.toLowerCase(text.charAt(i)) == 'b') {
+                i++;
+            }
+        }
+        if (i != to || amount > Long.MAX_VALUE >> shift) {
+            return Conversion.invalid("size", text, from, to);
+        }
+        return Conversion.of(amount << shift);
+    }
+
+    private static int unitShift(char unit) {
+        switch (Character.toLowerCase(unit)) {
+            case 'k':
+                return 10;
+            case 'm':
+                return 20;
+            case 'g':
+                return 30;
+            case 't':
+                return 40;
+            case 'p':
+                return 50;
+            default:
+                return 0;
+        }
+    }
+
+    static Conversion<InetSocketAddress> toHostPort(CharSequence text, int from, int to) {
+        int hostFrom = from;
+        int hostTo;
+        int colon;
+        if (from < to && text.charAt(from) == '[') {
+            hostFrom = from + 1;
+            hostTo = indexOf(']', text, hostFrom, to);
+            colon = hostTo + 1;
+        } else {
+            hostTo = indexOf(':', text, from, to);
+            colon = hostTo;
+        }
+        if (hostTo < 0 || hostTo == hostFrom || colon >= to || text.charAt(colon) != ':'
+                || colon + 1 == to || to - colon - 1 > 5) {
+            return Conversion.invalid("host:port", text, from, to);
+        }
+        for (int i = hostFrom; i < hostTo; i++) {
+            if (Character.isWhitespace(text.charAt(i)) || text.charAt(i) == '[' || text.charAt(i) == ']') {
+                return Conversion.invalid("host:port", text, from, to);
+            }
+        }
+        int port = 0;
+        for (int i = colon + 1; i < to; i++) {
+            if (!isDigit(text.charAt(i))) {
+                return Conversion.invalid("host:port", text, from, to);
+            }
+            port = port * 10 + text.charAt(i) - '0';
+        }
+        if (port > 65535) {
+            return Conversion.invalid("host:port", text, from, to);
+        }
+        return Conversion.of(InetSocketAddress.createUnresolved(text.subSequence(hostFrom, hostTo).toString(), port));
+    }
+
+    private static int indexOf(char c, CharSequence text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean is(String word, CharSequence text, int from, int to) {
+        if (to - from != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char c = text.charAt(from + i);
+            if (c != word.charAt(i) && Character.toLowerCase(c) != Character.toLowerCase(word.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.sergey_melnychuk;
+
+import java.util.Map;
+
+/**
+ * Immutable open-addressing table with string keys, which can be queried with a range of any
+ * {@link CharSequence}, so looking up a part of a larger buffer does not need a substring.
+ */
+final class KeyTable<V> {
+    private final String[] keys;
+    private final Object[] values;
+    private final int mask;
+
+    KeyTable(Map<String, V> entries) {
+        int capacity = Integer.highestOneBit(Math.max(2, entries.size() * 2) - 1) << 1;
+        this.keys = new String[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        for (Map.Entry<String, V> entry : entries.entrySet()) {
+            String key = entry.getKey();
+            int i = index(hash(key, 0, key.length()));
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = entry.getValue();
+        }
+    }
+
+    V get(CharSequence s) {
+        return get(s, 0, s.length());
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(CharSequence s, int from, int to) {
+        int length = to - from;
+        int i = index(hash(s, from, to));
+        String key;
+        while ((key = keys[i]) != null) {
+            if (key.length() == length && regionMatches(key, s, from)) {
+                return (V) values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    private int index(int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static int hash(CharSequence s, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h;
+    }
+
+    private static boolean regionMatches(String key, CharSequence s, int from) {
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != s.charAt(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,153 @@
+package io.github.sergey_melnychuk;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener that keeps counters and time histograms of matches, mappers and default suppliers,
+ * safe to attach to an instance shared between threads:
+ *
+ * <pre>
+ * MatchStats stats = new MatchStats();
+ * Argumentz argumentz = Argumentz.builder()
+ *         ...
+ *         .withListener(stats)
+ *         .build();
+ * </pre>
+ */
+public final class MatchStats implements Argumentz.Listener {
+    private final Timing matches = new Timing();
+    private final LongAdder failedMatches = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Map<String, Timing> mappers = new ConcurrentHashMap<>();
+    private final Map<String, Timing> defaults = new ConcurrentHashMap<>();
+
+    @Override
+    public void matchFinished(long nanos, boolean success) {
+        matches.record(nanos);
+        if (!success) {
+            failedMatches.increment();
+        }
+    }
+
+    @Override
+    public void mapped(String name, long nanos) {
+        mappers.computeIfAbsent(name, n -> new Timing()).record(nanos);
+    }
+
+    @Override
+    public void defaulted(String name, long nanos) {
+        defaults.computeIfAbsent(name, n -> new Timing()).record(nanos);
+    }
+
+    @Override
+    public void failed(RuntimeException error) {
+        errors.increment();
+    }
+
+    /**
+     * Times of top-level matches, including the failed ones.
+     */
+    public Timing matches() {
+        return matches;
+    }
+
+    public long failedMatches() {
+        return failedMatches.sum();
+    }
+
+    /**
+     * Number of errors passed to the error handler.
+     */
+    public long errors() {
+        return errors.sum();
+    }
+
+    /**
+     * Mapper times by long name of the option.
+     */
+    public Map<String, Timing> mappers() {
+        return Collections.unmodifiableMap(new TreeMap<>(mappers));
+    }
+
+    /**
+     * Default supplier times by long name of the option.
+     */
+    public Map<String, Timing> defaults() {
+        return Collections.unmodifiableMap(new TreeMap<>(defaults));
+    }
+
+    @Override
+    public String toString() {
+        return "MatchStats{matches=" + matches + ", failedMatches=" + failedMatches() + ", errors=" + errors() +
+                ", mappers=" + mappers() + ", defaults=" + defaults() + "}";
+    }
+
+    /**
+     * Count, total and maximum of recorded times, and a histogram with power-of-two buckets,
+     * so percentiles are accurate within a factor of two.
+     */
+    public static final class Timing {
+        private static final int BUCKETS = 64;
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private void record(long nanos) {
+            long value = Math.max(0L, nanos);
+            count.increment();
+            total.add(value);
+            max.accumulate(value);
+            buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long totalNanos() {
+            return total.sum();
+        }
+
+        public long maxNanos() {
+            return max.get();
+        }
+
+        /**
+         * Upper bound of the time below which the given fraction (from 0.0 to 1.0) of records falls,
+         * or 0 when nothing has been recorded.
+         */
+        public long percentileNanos(double fraction) {
+            long[] counts = new long[BUCKETS];
+            long sum = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                sum += counts[i];
+            }
+            long rank = (long) Math.ceil(Math.min(1.0, Math.max(0.0, fraction)) * sum);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return Math.min(maxNanos(), i == 0 ? 0L : (1L << i) - 1);
+                }
+            }
+            return 0L;
+        }
+
+        @Override
+        public String toString() {
+            long count = count();
+            return "{count=" + count + ", avg=" + (count == 0 ? 0 : totalNanos() / count) + "ns" +
+                    ", p50=" + percentileNanos(0.5) + "ns, p99=" + percentileNanos(0.99) + "ns" +
+                    ", max=" + maxNanos() + "ns}";
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package io.github.sergey_melnychuk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable prefix tree with string keys, for lookups by unique prefix and for listing keys with a given prefix.
+ * Lookup time depends on the length of the prefix (and on the number of results when listing),
+ * but not on the number of keys.
+ */
+final class PrefixTrie<V> {
+    private final Node root;
+
+    PrefixTrie(Map<String, V> entries) {
+        Builder root = new Builder();
+        for (Map.Entry<String, V> entry : entries.entrySet()) {
+            Builder node = root;
+            String key = entry.getKey();
+            for (int i = 0; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new Builder());
+            }
+            node.key = key;
+            node.value = entry.getValue();
+        }
+        this.root = root.build();
+    }
+
+    /**
+     * Number of keys starting with the range of {@code s}.
+     */
+    int count(CharSequence s, int from, int to) {
+        Node node = find(s, from, to);
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Value of the only key starting with the range of {@code s}, or null when there is no such key or more than one.
+     */
+    @SuppressWarnings("unchecked")
+    V unique(CharSequence s, int from, int to) {
+        Node node = find(s, from, to);
+        return node == null || node.size != 1 ? null : (V) node.only;
+    }
+
+    /**
+     * All keys starting with the prefix, in lexicographic order.
+     */
+    List<String> keys(CharSequence prefix) {
+        List<String> keys = new ArrayList<>();
+        Node node = find(prefix, 0, prefix.length());
+        if (node != null) {
+            collect(node, keys);
+        }
+        return keys;
+    }
+
+    private static void collect(Node node, List<String> into) {
+        if (node.key != null) {
+            into.add(node.key);
+        }
+        for (Node child : node.children) {
+            collect(child, into);
+        }
+    }
+
+    private Node find(CharSequence s, int from, int to) {
+        Node node = root;
+        for (int i = from; i < to && node != null; i++) {
+            node = node.child(s.charAt(i));
+        }
+        return node;
+    }
+
+    private static final class Node {
+        private final char[] chars;
+        private final Node[] children;
+        private final String key;
+        private final int size;
+        private final Object only;
+
+        private Node(char[] chars, Node[] children, String key, Object value) {
+            this.chars = chars;
+            this.children = children;
+            this.key = key;
+            int size = key == null ? 0 : 1;
+            Object only = value;
+            for (Node child : children) {
+                size += child.size;
+                only = child.only;
+            }
+            this.size = size;
+            this.only = size == 1 ? only : null;
+        }
+
+        private Node child(char c) {
+            int lo = 0;
+            int hi = chars.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (chars[mid] < c) {
+                    lo = mid + 1;
+                } else if (chars[mid] > c) {
+                    hi = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Builder {
+        private final TreeMap<Character, Builder> children = new TreeMap<>();
+        private String key;
+        private Object value;
+
+        private Node build() {
+            char[] chars = new char[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Builder> child : children.entrySet()) {
+                chars[i] = child.getKey();
+                nodes[i] = child.getValue().build();
+                i++;
+            }
+            return new Node(chars, nodes, key, value);
+        }
+    }
+}
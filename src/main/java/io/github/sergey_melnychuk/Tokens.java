@@ -0,0 +1,391 @@
+package io.github.sergey_melnychuk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Forward-only cursor over command-line tokens, so that {@code match} does not need all of them in an array.
+ */
+abstract class Tokens {
+
+    /**
+     * Advance to the next token.
+     *
+     * @return false when there are no more tokens
+     */
+    abstract boolean next();
+
+    /**
+     * Current token.
+     */
+    abstract String token();
+
+    /**
+     * Characters that hold the current token in range from {@link #start()} to {@link #end()},
+     * to look it up without creating a string.
+     */
+    CharSequence chars() {
+        return token();
+    }
+
+    int start() {
+        return 0;
+    }
+
+    int end() {
+        return token().length();
+    }
+
+    /**
+     * Location of the current token for error messages, or null when it came from the command line itself.
+     */
+    String where() {
+        return null;
+    }
+
+    /**
+     * Release resources held by the cursor, such as open argument files.
+     */
+    void close() {
+    }
+
+    static Tokens of(String[] args) {
+        return new Tokens() {
+            private int index = -1;
+
+            @Override
+            boolean next() {
+                return ++index < args.length;
+            }
+
+            @Override
+            String token() {
+                return args[index];
+            }
+        };
+    }
+
+    /**
+     * Tokens of {@code first} followed by tokens of {@code second}.
+     */
+    static Tokens concat(Tokens first, Tokens second) {
+        return new Tokens() {
+            private Tokens current = first;
+
+            @Override
+            boolean next() {
+                if (current.next()) {
+                    return true;
+                }
+                if (current == first) {
+                    current = second;
+                    return current.next();
+                }
+                return false;
+            }
+
+            @Override
+            String token() {
+                return current.token();
+            }
+
+            @Override
+            CharSequence chars() {
+                return current.chars();
+            }
+
+            @Override
+            int start() {
+                return current.start();
+            }
+
+            @Override
+            int end() {
+                return current.end();
+            }
+
+            @Override
+            String where() {
+                return current.where();
+            }
+
+            @Override
+            void close() {
+                first.close();
+                second.close();
+            }
+        };
+    }
+
+    /**
+     * Split the command line into tokens with {@link #split(CharSequence, Deque) shell-like rules}, except that
+     * {@code #} is an ordinary character, as it is in values such as colors. A token without quotes or escapes
+     * is exposed as a range of {@code line} itself, and only {@link #token()} creates a string, so that options
+     * can be looked up directly from the buffer.
+     */
+    static Tokens of(CharSequence line) {
+        return new LineTokens(line, false);
+    }
+
+    /**
+     * Expand {@code @path} tokens into the contents of the argument file, the way javac does. Files are read
+     * line by line, may refer to other argument files and are never loaded into memory as a whole.
+     * A token starting with {@code @@} is passed on as is, without the first {@code @}.
+     * <p>
+     * {@link #next()} throws {@link IllegalArgumentException} when an argument file cannot be read
+     * or when argument files include each other recursively.
+     */
+    static Tokens expanding(Tokens source) {
+        return new ArgFileTokens(source);
+    }
+
+    private static final class ArgFileTokens extends Tokens {
+        private final Tokens source;
+        private final Deque<ArgFile> files = new ArrayDeque<>();
+        private final Set<Path> open = new HashSet<>();
+        private String token;
+        private String where;
+
+        private ArgFileTokens(Tokens source) {
+            this.source = source;
+        }
+
+        @Override
+        boolean next() {
+            while (true) {
+                String next;
+                if (files.isEmpty()) {
+                    if (!source.next()) {
+                        return false;
+                    }
+                    next = source.token();
+                    where = source.where();
+                } else {
+                    ArgFile file = files.peek();
+                    next = file.next();
+                    if (next == null) {
+                        open.remove(file.path);
+                        files.pop().close();
+                        continue;
+                    }
+                    where = file.where();
+                }
+
+                if (next.startsWith("@@")) {
+                    token = next.substring(1);
+                    return true;
+                }
+                if (next.length() > 1 && next.charAt(0) == '@') {
+                    push(next.substring(1));
+                    continue;
+                }
+                token = next;
+                return true;
+            }
+        }
+
+        private void push(String name) {
+            Path path = Paths.get(name).toAbsolutePath().normalize();
+            if (!open.add(path)) {
+                String at = where == null ? "" : " (at " + where + ")";
+                throw new IllegalArgumentException("Recursive argument file: \"" + name + "\"" + at);
+            }
+            try {
+                files.push(new ArgFile(name, path, Files.newBufferedReader(path, StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                open.remove(path);
+                throw new IllegalArgumentException("Failed to read argument file: \"" + name + "\": " + e, e);
+            }
+        }
+
+        @Override
+        String token() {
+            return token;
+        }
+
+        @Override
+        String where() {
+            return where;
+        }
+
+        @Override
+        void close() {
+            while (!files.isEmpty()) {
+                files.pop().close();
+            }
+            open.clear();
+        }
+    }
+
+    private static final class ArgFile {
+        private final String name;
+        private final Path path;
+        private final BufferedReader reader;
+        private final Deque<String> pending = new ArrayDeque<>();
+        private int line = 0;
+
+        private ArgFile(String name, Path path, BufferedReader reader) {
+            this.name = name;
+            this.path = path;
+            this.reader = reader;
+        }
+
+        private String next() {
+            try {
+                while (pending.isEmpty()) {
+                    String text = reader.readLine();
+                    if (text == null) {
+                        return null;
+                    }
+                    line++;
+                    split(text, pending);
+                }
+                return pending.poll();
+            } catch (IOException e) {
+                String message = "Failed to read argument file: \"" + name + "\" at line " + line + ": " + e;
+                throw new IllegalArgumentException(message, e);
+            }
+        }
+
+        private String where() {
+            return name + ":" + line;
+        }
+
+        private void close() {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // nothing useful to do, all the tokens have been read already
+            }
+        }
+    }
+
+    /**
+     * Split a line into tokens using shell-like rules: whitespace separates tokens, single quotes keep text
+     * as is, double quotes allow {@code \"} and {@code \\} escapes, backslash outside of quotes escapes
+     * the next character, and {@code #} at the start of a token comments out the rest of the line.
+     */
+    static void split(CharSequence text, Deque<String> into) {
+        Tokens tokens = new LineTokens(text, true);
+        while (tokens.next()) {
+            into.add(tokens.token());
+        }
+    }
+
+    private static final class LineTokens extends Tokens {
+        private final CharSequence line;
+        private final boolean comments;
+        private final StringBuilder sb = new StringBuilder();
+        private int pos = 0;
+        private CharSequence chars;
+        private int start;
+        private int end;
+
+        private LineTokens(CharSequence line, boolean comments) {
+            this.line = line;
+            this.comments = comments;
+        }
+
+        @Override
+        boolean next() {
+            int length = line.length();
+            while (pos < length) {
+                char c = line.charAt(pos);
+                if (Character.isWhitespace(c)) {
+                    pos++;
+                } else if (c == '#' && comments) {
+                    while (pos < length && line.charAt(pos) != '\n') {
+                        pos++;
+                    }
+                } else {
+                    break;
+                }
+            }
+            if (pos == length) {
+                return false;
+            }
+
+            // fast path: plain token is a range of the line itself
+            start = pos;
+            while (pos < length) {
+                char c = line.charAt(pos);
+                if (Character.isWhitespace(c)) {
+                    break;
+                }
+                if (c == '\'' || c == '"' || c == '\\') {
+                    unescape();
+                    return true;
+                }
+                pos++;
+            }
+            chars = line;
+            end = pos;
+            return true;
+        }
+
+        private void unescape() {
+            int length = line.length();
+            sb.setLength(0);
+            sb.append(line, start, pos);
+            char quote = 0;
+            for (; pos < length; pos++) {
+                char c = line.charAt(pos);
+                if (quote == '\'') {
+                    if (c == '\'') {
+                        quote = 0;
+                    } else {
+                        sb.append(c);
+                    }
+                } else if (quote == '"') {
+                    if (c == '"') {
+                        quote = 0;
+                    } else if (c == '\\' && pos + 1 < length
+                            && (line.charAt(pos + 1) == '"' || line.charAt(pos + 1) == '\\')) {
+                        sb.append(line.charAt(++pos));
+                    } else {
+                        sb.append(c);
+                    }
+                } else if (Character.isWhitespace(c)) {
+                    break;
+                } else if (c == '\'' || c == '"') {
+                    quote = c;
+                } else if (c == '\\' && pos + 1 < length) {
+                    sb.append(line.charAt(++pos));
+                } else {
+                    sb.append(c);
+                }
+            }
+            chars = sb;
+            start = 0;
+            end = sb.length();
+        }
+
+        @Override
+        String token() {
+            return chars.subSequence(start, end).toString();
+        }
+
+        @Override
+        CharSequence chars() {
+            return chars;
+        }
+
+        @Override
+        int start() {
+            return start;
+        }
+
+        @Override
+        int end() {
+            return end;
+        }
+    }
+}
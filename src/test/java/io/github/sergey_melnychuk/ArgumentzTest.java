@@ -1,8 +1,20 @@
 package io.github.sergey_melnychuk;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -130,6 +142,536 @@ public class ArgumentzTest {
                 entry("-v", true), entry("--verbose", true));
     }
 
+    @Test
+    void testAllContentsWithDefaultsAndDisabledFlag() {
+        String[] args = {"--seconds", "3600", "-h", "localhost"};
+        Argumentz arguments = makeArgumentz();
+        Argumentz.Match match = arguments.match(args);
+
+        assertThat(match.all()).containsOnly(
+                entry("-u", "guest"), entry("--user", "guest"),
+                entry("-p", 8080), entry("--port", 8080),
+                entry("-s", 3600), entry("--seconds", 3600),
+                entry("-h", "localhost"), entry("--host", "localhost"),
+                entry("-v", false), entry("--verbose", false));
+    }
+
+    @Test
+    void testUnknownNamesResolveToNothing() {
+        String[] args = {"-s", "3600", "-h", "localhost", "-v"};
+        Argumentz.Match match = makeArgumentz().match(args);
+
+        assertThat(match.get("h")).isNull();
+        assertThat(match.get("--host")).isNull();
+        assertThat(match.get("nope")).isNull();
+        assertThat(match.getFlag("v")).isFalse();
+        assertThat(match.getFlag("host")).isFalse();
+    }
+
+    private static Argumentz makePrimitiveArgumentz() {
+        return Argumentz.builder()
+                .withIntParam('p', "port", "port for server to listen", 8080)
+                .withLongParam('s', "size", "max size in bytes")
+                .withDoubleParam('r', "ratio", "sampling ratio", 0.5)
+                .build();
+    }
+
+    @Test
+    void testPrimitiveParams() {
+        String[] args = {"-p", "9000", "--size", "4294967296", "-r", "0.25"};
+        Argumentz.Match match = makePrimitiveArgumentz().match(args);
+
+        assertThat(match.getIntValue("port")).isEqualTo(9000);
+        assertThat(match.getLongValue("size")).isEqualTo(4294967296L);
+        assertThat(match.getDoubleValue("ratio")).isEqualTo(0.25);
+        assertThat(match.getLongValue("port")).isEqualTo(9000L);
+        assertThat(match.getDoubleValue("size")).isEqualTo(4294967296.0);
+        assertThat(match.getInt("port")).isEqualTo(9000);
+        assertThat(match.getAs(Long.class, "size")).isEqualTo(4294967296L);
+        assertThat(match.all()).contains(entry("-p", 9000), entry("--ratio", 0.25));
+    }
+
+    @Test
+    void testPrimitiveDefaults() {
+        Argumentz.Match match = makePrimitiveArgumentz().match(new String[]{"-s", "1024"});
+
+        assertThat(match.getIntValue("port")).isEqualTo(8080);
+        assertThat(match.getDoubleValue("ratio")).isEqualTo(0.5);
+    }
+
+    @Test
+    void testPrimitiveMissingRequired() {
+        assertThatThrownBy(() -> makePrimitiveArgumentz().match(new String[]{"-p", "9000"}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Missing required parameter: \"-s\" / \"--size\"");
+    }
+
+    @Test
+    void testPrimitiveInvalidValue() {
+        assertThatThrownBy(() -> makePrimitiveArgumentz().match(new String[]{"-s", "1k"}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Failed to resolve parameter: \"-s\" / \"--size\": For input string: \"1k\"");
+    }
+
+    @Test
+    void testPrimitiveAccessorOnBoxedParam() {
+        Argumentz.Match match = makeArgumentz().match(new String[]{"-s", "60", "-h", "localhost"});
+
+        assertThat(match.getIntValue("seconds")).isEqualTo(60);
+        assertThatThrownBy(() -> match.getIntValue("host"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Failed to cast value 'localhost' to class 'Integer'.");
+        assertThatThrownBy(() -> match.getLongValue("missing"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Failed to cast value 'null' to class 'long'.");
+    }
+
+    @Test
+    void testPrimitiveUsageMessage() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        makePrimitiveArgumentz().printUsage(new PrintStream(baos));
+
+        assertThat(baos.toString()).isEqualTo("Usage: java -cp <...> <MainClass> [ARGUMENTS]\n" +
+                "     -p --port          port for server to listen (default: 8080)\n" +
+                "     -s --size          max size in bytes (required)\n" +
+                "     -r --ratio         sampling ratio  (default: 0.5)\n");
+    }
+
+    @Test
+    void testLazyEvaluationRunsMappersAndDefaultsOnFirstRead() {
+        AtomicInteger mapped = new AtomicInteger();
+        AtomicInteger defaulted = new AtomicInteger();
+
+        Argumentz arguments = Argumentz.builder()
+                .withParam('p', "port", "port", s -> {
+                    mapped.incrementAndGet();
+                    return Integer.parseInt(s);
+                })
+                .withParam('h', "host", "host", () -> {
+                    defaulted.incrementAndGet();
+                    return "localhost";
+                })
+                .withLazyEvaluation()
+                .build();
+        Argumentz.Match match = arguments.match(new String[]{"-p", "9000"});
+        assertThat(mapped).hasValue(0);
+        assertThat(defaulted).hasValue(0);
+
+        assertThat(match.getInt("port")).isEqualTo(9000);
+        assertThat(match.getInt("port")).isEqualTo(9000);
+        assertThat(mapped).hasValue(1);
+        assertThat(defaulted).hasValue(0);
+
+        assertThat(match.get("host")).isEqualTo("localhost");
+        assertThat(match.all()).contains(entry("--host", "localhost"));
+        assertThat(defaulted).hasValue(1);
+    }
+
+    @Test
+    void testLazyEvaluationResolvesOnceUnderConcurrentReads() throws Exception {
+        AtomicInteger mapped = new AtomicInteger();
+        Argumentz arguments = Argumentz.builder()
+                .withParam('p', "port", "port", s -> {
+                    mapped.incrementAndGet();
+                    return Integer.parseInt(s);
+                })
+                .withLazyEvaluation()
+                .build();
+        Argumentz.Match match = arguments.match(new String[]{"-p", "9000"});
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return match.getInt("port");
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> future : futures) {
+                assertThat(future.get()).isEqualTo(9000);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(mapped).hasValue(1);
+    }
+
+    @Test
+    void testLazyEvaluationReportsMissingRequiredEagerly() {
+        Argumentz arguments = Argumentz.builder()
+                .withParam('p', "port", "port", Integer::parseInt)
+                .withLazyEvaluation()
+                .build();
+
+        assertThatThrownBy(() -> arguments.match(new String[]{}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Missing required parameter: \"-p\" / \"--port\"");
+    }
+
+    @Test
+    void testLazyEvaluationReportsMappingFailureOnRead() {
+        Argumentz arguments = Argumentz.builder()
+                .withParam('p', "port", "port", Integer::parseInt)
+                .withErrorHandler((e, a) -> { /* empty */ })
+                .withLazyEvaluation()
+                .build();
+
+        Argumentz.Match match = arguments.match(new String[]{"-p", "PORT"});
+        assertThatThrownBy(() -> match.getInt("port"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Error handler did not terminate execution flow of `getAs`.");
+    }
+
+    @Test
+    void testMatchAllKeepsOrderAndReportsFailuresPerItem() {
+        Ref<Integer> handled = new Ref<>();
+        Argumentz arguments = Argumentz.builder()
+                .withIntParam('n', "number", "some number")
+                .withErrorHandler((e, a) -> handled.value = 1)
+                .build();
+
+        List<String[]> batch = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            batch.add(i % 10 == 7 ? new String[]{"-n", "x" + i} : new String[]{"-n", Integer.toString(i)});
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        List<Argumentz.Result> results;
+        try {
+            results = arguments.matchAll(batch, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertThat(results).hasSize(1000);
+        for (int i = 0; i < 1000; i++) {
+            Argumentz.Result result = results.get(i);
+            if (i % 10 == 7) {
+                assertThat(result.isSuccess()).isFalse();
+                assertThat(result.match()).isNull();
+                assertThat(result.error())
+                        .isInstanceOf(IllegalArgumentException.class)
+                        .hasMessage("Failed to resolve parameter: \"-n\" / \"--number\": For input string: \"x" + i + "\"");
+            } else {
+                assertThat(result.isSuccess()).isTrue();
+                assertThat(result.error()).isNull();
+                assertThat(result.match().getIntValue("number")).isEqualTo(i);
+            }
+        }
+        assertThat(handled.value).isNull();
+    }
+
+    @Test
+    void testMatchAllReportsFailuresOfSubcommands() {
+        List<RuntimeException> handled = new ArrayList<>();
+        Argumentz arguments = Argumentz.builder()
+                .withFlag('v', "verbose", "enable extra logging")
+                .withCommand("push", () -> Argumentz.builder()
+                        .withParam('d', "depth", "depth of history", Integer::parseInt)
+                        .withErrorHandler((e, a) -> handled.add(e))
+                        .build())
+                .build();
+
+        List<Argumentz.Result> results = arguments.matchAll(Arrays.asList(
+                new String[]{"-v", "push", "-d", "10"},
+                new String[]{"push", "-d", "ten"}));
+
+        assertThat(results.get(0).isSuccess()).isTrue();
+        assertThat(results.get(0).match().getCommandMatch().getInt("depth")).isEqualTo(10);
+        assertThat(results.get(1).isSuccess()).isFalse();
+        assertThat(results.get(1).error())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Failed to resolve parameter: \"-d\" / \"--depth\": For input string: \"ten\"");
+        assertThat(handled).isEmpty();
+    }
+
+    @Test
+    void testArgumentFiles() throws Exception {
+        Path file = Files.createTempFile("argumentz", ".txt");
+        Files.write(file, Arrays.asList("-u admin", "--port 9000", "-h 'local host'"));
+
+        Argumentz arguments = Argumentz.builder()
+                .withParam('u', "user", "username to connect to the server", () -> "guest")
+                .withParam('p', "port", "port for server to listen", Integer::parseInt, () -> 8080)
+                .withParam('h', "host", "host for client to connect to")
+                .withArgumentFiles()
+                .build();
+
+        Argumentz.Match match = arguments.match(new String[]{"@" + file, "-u", "root"});
+
+        assertThat(match.get("user")).isEqualTo("root");
+        assertThat(match.getInt("port")).isEqualTo(9000);
+        assertThat(match.get("host")).isEqualTo("local host");
+    }
+
+    @Test
+    void testArgumentFilesErrorContainsLocation() throws Exception {
+        Path file = Files.createTempFile("argumentz", ".txt");
+        Files.write(file, Arrays.asList("-h localhost", "", "-p PORT"));
+
+        Argumentz arguments = Argumentz.builder()
+                .withIntParam('p', "port", "port for server to listen")
+                .withParam('h', "host", "host for client to connect to")
+                .withArgumentFiles()
+                .build();
+
+        assertThatThrownBy(() -> arguments.match(new String[]{"@" + file}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Failed to resolve parameter: \"-p\" / \"--port\": " +
+                        "For input string: \"PORT\" (at " + file + ":3)");
+    }
+
+    @Test
+    void testArgumentFilesAreNotExpandedByDefault() {
+        Argumentz arguments = Argumentz.builder()
+                .withParam('u', "user", "username")
+                .build();
+
+        assertThat(arguments.match(new String[]{"-u", "@admin"}).get("user")).isEqualTo("@admin");
+    }
+
+    @Test
+    void testMatchCommandLine() {
+        Argumentz.Match match = makeArgumentz()
+                .match("-u 'admin user' --port 9000 -s \"36\"00 -h localhost -v");
+
+        assertThat(match.get("user")).isEqualTo("admin user");
+        assertThat(match.getInt("port")).isEqualTo(9000);
+        assertThat(match.getInt("seconds")).isEqualTo(3600);
+        assertThat(match.get("host")).isEqualTo("localhost");
+        assertThat(match.getFlag("verbose")).isTrue();
+    }
+
+    @Test
+    void testMatchCommandLineBytes() {
+        ByteBuffer buffer = ByteBuffer.wrap("??? -u 'адмін' -s 60 -h localhost".getBytes(StandardCharsets.UTF_8));
+        buffer.position(4);
+
+        Argumentz.Match match = makeArgumentz().match(buffer);
+
+        assertThat(match.get("user")).isEqualTo("адмін");
+        assertThat(match.getInt("seconds")).isEqualTo(60);
+        assertThat(match.getFlag("verbose")).isFalse();
+        assertThat(buffer.position()).isEqualTo(4);
+    }
+
+    @Test
+    void testMatchCommandLineKeepsHashValues() {
+        Argumentz argumentz = Argumentz.builder()
+                .withParam('c', "color", "text color")
+                .withParam('n', "name", "user name")
+                .build();
+
+        Argumentz.Match match = argumentz.match("--color #fff --name bob");
+
+        assertThat(match.get("color")).isEqualTo("#fff");
+        assertThat(match.get("name")).isEqualTo("bob");
+    }
+
+    @Test
+    void testMatchCommandLineQuotedOptionName() {
+        Argumentz.Match match = makeArgumentz().match("-s 60 '-h' localhost \"-\"v");
+
+        assertThat(match.get("host")).isEqualTo("localhost");
+        assertThat(match.getFlag("verbose")).isTrue();
+    }
+
+    @Test
+    void testUsageIsRenderedOnceOnDemand() {
+        AtomicInteger defaulted = new AtomicInteger();
+        Argumentz arguments = Argumentz.builder()
+                .withFlag('v', "verbose", "enable extra logging")
+                .withParam('h', "host", "host to connect to", () -> {
+                    defaulted.incrementAndGet();
+                    return "localhost";
+                })
+                .build();
+        assertThat(defaulted).hasValue(0);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PrintStream ps = new PrintStream(baos);
+        arguments.printUsage(ps);
+        arguments.printUsage(ps);
+
+        String usage = "Usage: java -cp <...> <MainClass> [ARGUMENTS]\n" +
+                "     -v --verbose       enable extra logging\n" +
+                "     -h --host          host to connect to (default: localhost)\n";
+        assertThat(baos.toString()).isEqualTo(usage + usage);
+        assertThat(defaulted).hasValue(1);
+    }
+
+    @Test
+    void testWatchLayersCommandLineOverOptionsFile() throws Exception {
+        Path file = Files.createTempFile("argumentz", ".conf");
+        Files.write(file, Arrays.asList("-u admin", "--port 9000", "-h localhost"));
+
+        try (Argumentz.Live live = makeArgumentz().watch(file, new String[]{"-s", "60", "-h", "example.com"})) {
+            Argumentz.Match match = live.current();
+            assertThat(match.get("user")).isEqualTo("admin");
+            assertThat(match.getInt("port")).isEqualTo(9000);
+            assertThat(match.getInt("seconds")).isEqualTo(60);
+            assertThat(match.get("host")).isEqualTo("example.com");
+        }
+    }
+
+    @Test
+    void testReloadNotifiesChangedKeysAndRemapsOnlyChangedInputs() throws Exception {
+        Path file = Files.createTempFile("argumentz", ".conf");
+        Files.write(file, Arrays.asList("-p 9000", "-s 60", "-v"));
+
+        AtomicInteger mapped = new AtomicInteger();
+        Argumentz arguments = Argumentz.builder()
+                .withParam('p', "port", "port", s -> {
+                    mapped.incrementAndGet();
+                    return Integer.parseInt(s);
+                })
+                .withIntParam('s', "seconds", "timeout in seconds")
+                .withParam('h', "host", "host", () -> "localhost")
+                .withFlag('v', "verbose", "enable extra logging")
+                .build();
+
+        List<String> changes = new CopyOnWriteArrayList<>();
+        List<RuntimeException> errors = new CopyOnWriteArrayList<>();
+        try (Argumentz.Live live = arguments.watch(file, new String[0])) {
+            live.addListener((name, before, after) -> changes.add(name + ": " + before + " -> " + after));
+            live.onError(errors::add);
+            Argumentz.Match first = live.current();
+            assertThat(mapped).hasValue(1);
+
+            // written atomically, so the watcher thread reloading the same change sees nothing new
+            replace(file, Arrays.asList("-p 9000", "-s 120", "-h example.com"));
+            live.reload();
+
+            assertThat(live.current()).isNotSameAs(first);
+            assertThat(live.current().getIntValue("seconds")).isEqualTo(120);
+            assertThat(first.getIntValue("seconds")).isEqualTo(60);
+            assertThat(changes).containsExactlyInAnyOrder(
+                    "seconds: 60 -> 120", "host: localhost -> example.com", "verbose: true -> false");
+            assertThat(mapped).hasValue(1);
+
+            replace(file, Arrays.asList("-p 9001", "-s NaN"));
+            Argumentz.Match second = live.current();
+            live.reload();
+
+            assertThat(live.current()).isSameAs(second);
+            assertThat(errors).isNotEmpty();
+            assertThat(errors.get(errors.size() - 1))
+                    .hasMessageStartingWith("Failed to resolve parameter: \"-s\" / \"--seconds\"");
+        }
+    }
+
+    @Test
+    void testWatchPicksUpFileChanges() throws Exception {
+        Path file = Files.createTempFile("argumentz", ".conf");
+        Files.write(file, Arrays.asList("-s 60 -h localhost"));
+
+        BlockingQueue<String> changes = new LinkedBlockingQueue<>();
+        try (Argumentz.Live live = makeArgumentz().watch(file, new String[0])) {
+            live.addListener((name, before, after) -> changes.add(name + "=" + after));
+
+            replace(file, Arrays.asList("-s 90 -h localhost"));
+
+            // file system notifications may take a while, depending on the platform
+            assertThat(changes.poll(30, TimeUnit.SECONDS)).isEqualTo("seconds=90");
+            assertThat(live.current().getInt("seconds")).isEqualTo(90);
+        }
+    }
+
+    private static void replace(Path file, List<String> lines) throws IOException {
+        Path temp = Files.createTempFile(file.getParent(), "argumentz", ".tmp");
+        Files.write(temp, lines);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Argumentz makeCommandArgumentz(AtomicInteger built) {
+        return Argumentz.builder()
+                .withFlag('v', "verbose", "enable extra logging")
+                .withParam('C', "dir", "working directory", () -> ".")
+                .withCommand("commit", "record changes", () -> {
+                    built.incrementAndGet();
+                    return Argumentz.builder()
+                            .withParam('m', "message", "commit message")
+                            .withFlag('a', "all", "commit all changes")
+                            .build();
+                })
+                .withCommand("push", () -> {
+                    built.incrementAndGet();
+                    return Argumentz.builder()
+                            .withParam('r', "remote", "remote name", () -> "origin")
+                            .build();
+                })
+                .build();
+    }
+
+    @Test
+    void testCommandDispatchBuildsOnlySelectedParser() {
+        AtomicInteger built = new AtomicInteger();
+        Argumentz arguments = makeCommandArgumentz(built);
+        assertThat(built).hasValue(0);
+
+        Argumentz.Match match = arguments.match(new String[]{"-v", "commit", "-m", "fix", "-a"});
+
+        assertThat(built).hasValue(1);
+        assertThat(match.getCommand()).isEqualTo("commit");
+        assertThat(match.getFlag("verbose")).isTrue();
+        assertThat(match.get("message")).isNull();
+
+        Argumentz.Match commit = match.getCommandMatch();
+        assertThat(commit.get("message")).isEqualTo("fix");
+        assertThat(commit.getFlag("all")).isTrue();
+        assertThat(commit.getFlag("verbose")).isTrue();
+        assertThat(commit.get("dir")).isEqualTo(".");
+        assertThat(commit.all()).contains(entry("--message", "fix"), entry("-v", true), entry("--dir", "."));
+
+        arguments.match(new String[]{"commit", "-m", "again"});
+        assertThat(built).hasValue(1);
+    }
+
+    @Test
+    void testCommandIsOptional() {
+        AtomicInteger built = new AtomicInteger();
+        Argumentz.Match match = makeCommandArgumentz(built).match(new String[]{"-C", "/tmp"});
+
+        assertThat(match.getCommand()).isNull();
+        assertThat(match.getCommandMatch()).isNull();
+        assertThat(match.get("dir")).isEqualTo("/tmp");
+        assertThat(built).hasValue(0);
+    }
+
+    @Test
+    void testUnknownCommand() {
+        AtomicInteger built = new AtomicInteger();
+        assertThatThrownBy(() -> makeCommandArgumentz(built).match(new String[]{"-v", "comit", "-m", "x"}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unknown command: \"comit\"");
+    }
+
+    @Test
+    void testCommandErrorsGoToCommandParser() {
+        AtomicInteger built = new AtomicInteger();
+        assertThatThrownBy(() -> makeCommandArgumentz(built).match(new String[]{"commit", "-a"}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Missing required parameter: \"-m\" / \"--message\"");
+    }
+
+    @Test
+    void testCommandUsageDoesNotBuildParsers() {
+        AtomicInteger built = new AtomicInteger();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        makeCommandArgumentz(built).printUsage(new PrintStream(baos));
+
+        assertThat(baos.toString()).isEqualTo("Usage: java -cp <...> <MainClass> [ARGUMENTS]\n" +
+                "     -v --verbose       enable extra logging\n" +
+                "     -C --dir           working directory (default: .)\n" +
+                "Commands:\n" +
+                "        commit          record changes \n" +
+                "        push                           \n");
+        assertThat(built).hasValue(0);
+    }
+
     // Example of a part of a complex argument Param
     private static class Range {
         private final long lo;
@@ -358,4 +900,1039 @@ public class ArgumentzTest {
                 .isInstanceOf(IllegalStateException.class)
                 .hasMessage("Infinite recursive call to Argumentz.match detected.");
     }
+
+    @Test
+    void testInfiniteRecursiveMatchAcrossInstancesIsDetected() {
+        final String[] args = new String[]{"--message", "hello"};
+        Ref<Argumentz> other = new Ref<>();
+
+        Argumentz first = Argumentz.builder()
+                .withParam('m', "match", "some description")
+                .withErrorHandler((e, a) -> {
+                    other.value.match(args);
+                })
+                .build();
+
+        other.value = Argumentz.builder()
+                .withParam('m', "match", "some description")
+                .withErrorHandler((e, a) -> {
+                    first.match(args);
+                })
+                .build();
+
+        assertThatThrownBy(() -> first.match(args))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Infinite recursive call to Argumentz.match detected.");
+
+        // guard is released after the failed call, so instances stay usable
+        assertThatThrownBy(() -> other.value.match(args))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Infinite recursive call to Argumentz.match detected.");
+    }
+
+    @Test
+    void testSequentialMatchIsNotMistakenForRecursion() {
+        Argumentz argumentz = makeArgumentz();
+        String[] args = {"-s", "3600", "-h", "localhost"};
+
+        argumentz.match(args);
+        Argumentz.Match match = argumentz.match(args);
+
+        assertThat(match.getInt("seconds")).isEqualTo(3600);
+    }
+
+    private static Argumentz makeRepeatableArgumentz(List<String> seen) {
+        return Argumentz.builder()
+                .withRepeatableParam('I', "include", "include path", File::new)
+                .withRepeatableIntParam('p', "port", "port to listen")
+                .withRepeatableLongParam('l', "limit", "limit in bytes")
+                .withRepeatableParam('D', "define", "define property", String::toUpperCase, seen::add)
+                .withParam('h', "host", "host for client to connect to", () -> "localhost")
+                .build();
+    }
+
+    @Test
+    void testRepeatableParamsAreCollectedInOrder() {
+        List<String> seen = new ArrayList<>();
+        Argumentz argumentz = makeRepeatableArgumentz(seen);
+
+        Argumentz.Match match = argumentz.match(new String[]{
+                "-I", "a", "-p", "80", "--include", "b", "-D", "x=1", "-p", "443", "-l", "10000000000", "-D", "y=2"});
+
+        assertThat(match.getAll(File.class, "include"))
+                .containsExactly(new File("a"), new File("b"));
+        assertThat(match.getInts("port")).containsExactly(80, 443);
+        assertThat(match.getLongs("limit")).containsExactly(10000000000L);
+        assertThat(seen).containsExactly("X=1", "Y=2");
+        assertThat(match.getAll(String.class, "define")).isEmpty();
+        assertThat(match.getAll(String.class, "host")).containsExactly("localhost");
+        assertThat(match.getAll(String.class, "unknown")).isEmpty();
+    }
+
+    @Test
+    void testRepeatableParamsAreEmptyWhenAbsent() {
+        Argumentz argumentz = makeRepeatableArgumentz(new ArrayList<>());
+
+        Argumentz.Match match = argumentz.match(new String[0]);
+
+        assertThat(match.getAll(File.class, "include")).isEmpty();
+        assertThat(match.getInts("port")).isEmpty();
+        assertThat(match.getLongs("limit")).isEmpty();
+        assertThatThrownBy(() -> match.getAll(String.class, "include").add("x"))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void testRepeatableIntParamFailsOnInvalidValue() {
+        Argumentz argumentz = makeRepeatableArgumentz(new ArrayList<>());
+
+        assertThatThrownBy(() -> argumentz.match(new String[]{"-p", "80", "-p", "http"}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Failed to resolve parameter: \"-p\" / \"--port\"");
+    }
+
+    @Test
+    void testRepeatableParamUsage() {
+        Argumentz argumentz = makeRepeatableArgumentz(new ArrayList<>());
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        argumentz.printUsage(new PrintStream(os));
+
+        assertThat(os.toString()).containsPattern("--include +include path +\\(repeatable\\)");
+    }
+
+    @Test
+    void testListenerIsNotifiedOfMappersDefaultsAndErrors() {
+        List<String> events = new ArrayList<>();
+        Argumentz argumentz = Argumentz.builder()
+                .withParam('u', "user", "username to connect to the server", () -> "guest")
+                .withParam('p', "port", "port for server to listen", Integer::parseInt, () -> 8080)
+                .withIntParam('s', "seconds", "timeout in seconds")
+                .withFlag('v', "verbose", "enable extra logging")
+                .withListener(new Argumentz.Listener() {
+                    @Override
+                    public void matchStarted() {
+                        events.add("started");
+                    }
+
+                    @Override
+                    public void matchFinished(long nanos, boolean success) {
+                        events.add("finished:" + success);
+                    }
+
+                    @Override
+                    public void mapped(String name, long nanos) {
+                        events.add("mapped:" + name);
+                    }
+
+                    @Override
+                    public void defaulted(String name, long nanos) {
+                        events.add("defaulted:" + name);
+                    }
+
+                    @Override
+                    public void failed(RuntimeException error) {
+                        events.add("failed:" + error.getMessage());
+                    }
+                })
+                .build();
+
+        argumentz.match(new String[]{"-p", "80", "-s", "10"});
+        assertThat(events).containsExactly("started", "mapped:port", "mapped:seconds", "defaulted:user", "finished:true");
+
+        events.clear();
+        assertThatThrownBy(() -> argumentz.match(new String[]{"-p", "http", "-s", "10"}))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(events).containsExactly("started", "mapped:port",
+                "failed:Failed to resolve parameter: \"-p\" / \"--port\": For input string: \"http\"",
+                "finished:false");
+    }
+
+    @Test
+    void testListenersAreCalledInOrder() {
+        List<String> events = new ArrayList<>();
+        Argumentz argumentz = Argumentz.builder()
+                .withFlag('v', "verbose", "enable extra logging")
+                .withListener(new Argumentz.Listener() {
+                    @Override
+                    public void matchStarted() {
+                        events.add("first");
+                    }
+                })
+                .withListener(new Argumentz.Listener() {
+                    @Override
+                    public void matchStarted() {
+                        events.add("second");
+                    }
+                })
+                .build();
+
+        argumentz.match(new String[0]);
+
+        assertThat(events).containsExactly("first", "second");
+    }
+
+    @Test
+    void testMatchAsyncRunsMappersConcurrently() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(3);
+        Function<String, String> blocking = s -> {
+            try {
+                barrier.await(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return s.toUpperCase();
+        };
+        Argumentz argumentz = Argumentz.builder()
+                .withParam('c', "cert", "certificate file", blocking)
+                .withParam('k', "key", "key file", blocking)
+                .withParam('s', "schema", "schema file", blocking, () -> {
+                    try {
+                        barrier.await(5, TimeUnit.SECONDS);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return "DEFAULT";
+                })
+                .withIntParam('p', "port", "port for server to listen", 8080)
+                .build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Argumentz.Match match = argumentz.matchAsync(new String[]{"-c", "a.pem", "-k", "a.key"}, executor)
+                    .get(10, TimeUnit.SECONDS);
+
+            assertThat(match.get("cert")).isEqualTo("A.PEM");
+            assertThat(match.get("key")).isEqualTo("A.KEY");
+            assertThat(match.get("schema")).isEqualTo("DEFAULT");
+            assertThat(match.getIntValue("port")).isEqualTo(8080);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testMatchAsyncCollectsAllFailures() {
+        List<RuntimeException> handled = new ArrayList<>();
+        Argumentz argumentz = Argumentz.builder()
+                .withParam('p', "port", "port for server to listen", Integer::parseInt)
+                .withParam('s', "seconds", "timeout in seconds", Integer::parseInt)
+                .withParam('h', "host", "host for client to connect to")
+                .withErrorHandler((e, a) -> handled.add(e))
+                .build();
+
+        CompletableFuture<Argumentz.Match> future =
+                argumentz.matchAsync(new String[]{"-p", "http", "-s", "ten"}, Runnable::run);
+
+        assertThatThrownBy(future::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Error handler did not terminate execution flow of `matchAsync`.");
+        assertThat(handled).hasSize(1);
+        RuntimeException error = handled.get(0);
+        assertThat(error).hasMessage("Failed to resolve parameter: \"-p\" / \"--port\": For input string: \"http\"");
+        assertThat(error.getSuppressed()).extracting(Throwable::getMessage).containsExactly(
+                "Failed to resolve parameter: \"-s\" / \"--seconds\": For input string: \"ten\"",
+                "Missing required parameter: \"-h\" / \"--host\"");
+    }
+
+    @Test
+    void testMatchAsyncCollectsFailuresOfSubcommands() {
+        List<RuntimeException> handled = new ArrayList<>();
+        List<RuntimeException> handledBySubcommand = new ArrayList<>();
+        Argumentz argumentz = Argumentz.builder()
+                .withParam('p', "port", "port for server to listen", Integer::parseInt)
+                .withCommand("push", () -> Argumentz.builder()
+                        .withParam('d', "depth", "depth of history", Integer::parseInt)
+                        .withErrorHandler((e, a) -> handledBySubcommand.add(e))
+                        .build())
+                .withErrorHandler((e, a) -> handled.add(e))
+                .build();
+
+        CompletableFuture<Argumentz.Match> future =
+                argumentz.matchAsync(new String[]{"-p", "http", "push", "-d", "ten"}, Runnable::run);
+
+        assertThatThrownBy(future::join).isInstanceOf(CompletionException.class);
+        assertThat(handledBySubcommand).isEmpty();
+        assertThat(handled).hasSize(1);
+        RuntimeException error = handled.get(0);
+        assertThat(error).hasMessage("Failed to resolve parameter: \"-p\" / \"--port\": For input string: \"http\"");
+        assertThat(error.getSuppressed()).extracting(Throwable::getMessage).containsExactly(
+                "Failed to resolve parameter: \"-d\" / \"--depth\": For input string: \"ten\"");
+    }
+
+    @Test
+    void testMatchAsyncOnDefaultExecutor() {
+        Argumentz argumentz = makeArgumentz();
+
+        Argumentz.Match match = argumentz.matchAsync(new String[]{"-s", "3600", "-h", "localhost"}).join();
+
+        assertThat(match.get("user")).isEqualTo("guest");
+        assertThat(match.getInt("port")).isEqualTo(8080);
+        assertThat(match.getInt("seconds")).isEqualTo(3600);
+        assertThat(match.get("host")).isEqualTo("localhost");
+    }
+
+    @Test
+    void testCheckReportsEveryProblem() {
+        AtomicInteger handled = new AtomicInteger();
+        Argumentz argumentz = Argumentz.builder()
+                .withParam('u', "user", "username to connect to the server", () -> "guest")
+                .withParam('p', "port", "port for server to listen", Integer::parseInt, () -> 8080)
+                .withParam('s', "seconds", "timeout in seconds", Integer::parseInt)
+                .withIntParam('r', "retries", "number of retries", 3)
+                .withParam('h', "host", "host for client to connect to")
+                .withFlag('v', "verbose", "enable extra logging")
+                .withErrorHandler((e, a) -> handled.incrementAndGet())
+                .build();
+
+        Argumentz.Report report = argumentz.check(new String[]{"-p", "http", "--retries", "many", "-x", "-v", "-u"});
+
+        assertThat(report.isValid()).isFalse();
+        assertThat(report.match()).isNull();
+        assertThat(report.problems()).extracting(Argumentz.Problem::kind).containsExactly(
+                Argumentz.Problem.Kind.INVALID,
+                Argumentz.Problem.Kind.INVALID,
+                Argumentz.Problem.Kind.UNKNOWN,
+                Argumentz.Problem.Kind.MISSING_VALUE,
+                Argumentz.Problem.Kind.MISSING,
+                Argumentz.Problem.Kind.MISSING);
+        assertThat(report.problems()).extracting(Argumentz.Problem::message).containsExactly(
+                "Failed to resolve parameter: \"-p\" / \"--port\": For input string: \"http\"",
+                "Failed to resolve parameter: \"-r\" / \"--retries\": For input string: \"many\"",
+                "Unknown option: \"-x\"",
+                "Missing value of parameter: \"-u\" / \"--user\"",
+                "Missing required parameter: \"-s\" / \"--seconds\"",
+                "Missing required parameter: \"-h\" / \"--host\"");
+        assertThat(report.problems()).extracting(Argumentz.Problem::token)
+                .containsExactly("--port", "--retries", "-x", "--user", "--seconds", "--host");
+        assertThat(handled.get()).isZero();
+    }
+
+    @Test
+    void testCheckReportsInvalidNumbersLikeMatch() {
+        Argumentz argumentz = Argumentz.builder()
+                .withIntParam('i', "int", "int value", 0)
+                .withLongParam('l', "long", "long value", 0L)
+                .withDoubleParam('d', "double", "double value", 0.0)
+                .withRepeatableIntParam('r', "repeat", "repeatable int")
+                .withErrorHandler((e, a) -> { throw e; })
+                .build();
+
+        String[][] lines = {
+                {"-i", "x"}, {"-i", ""}, {"-i", "99999999999"}, {"-i", "+"}, {"-i", "1 "},
+                {"-l", "99999999999999999999"}, {"-l", "1L"}, {"-l", "-"},
+                {"-d", "1e"}, {"-d", "1.5.2"}, {"-d", "-..1"}, {"-d", "1.e.5"}, {"-d", ""}, {"-d", "1.5x"}, {"-d", " "}, {"-d", "0x1Q"},
+                {"-r", "1", "-r", "two"}
+        };
+        for (String[] line : lines) {
+            Argumentz.Report report = argumentz.check(line);
+            assertThat(report.problems()).hasSize(1);
+            assertThatThrownBy(() -> argumentz.match(line))
+                    .hasMessage(report.problems().get(0).message());
+        }
+
+        assertThat(argumentz.check(new String[]{"-d", " 1.5d", "-l", "-42", "-r", "7"}).isValid()).isTrue();
+    }
+
+    @Test
+    void testCheckReturnsMatchWhenValid() {
+        Argumentz argumentz = makeArgumentz();
+
+        Argumentz.Report report = argumentz.check(new String[]{"-s", "3600", "-h", "localhost", "-v"});
+
+        assertThat(report.isValid()).isTrue();
+        assertThat(report.problems()).isEmpty();
+        Argumentz.Match match = report.match();
+        assertThat(match.get("user")).isEqualTo("guest");
+        assertThat(match.getInt("port")).isEqualTo(8080);
+        assertThat(match.getInt("seconds")).isEqualTo(3600);
+        assertThat(match.getFlag("verbose")).isTrue();
+    }
+
+    @Test
+    void testCheckDoesNotRunConsumersOfInvalidCommandLine() {
+        List<String> seen = new ArrayList<>();
+        Argumentz argumentz = makeRepeatableArgumentz(seen);
+
+        assertThat(argumentz.check(new String[]{"-D", "x=1", "-p", "http"}).isValid()).isFalse();
+        assertThat(seen).isEmpty();
+
+        Argumentz.Report report = argumentz.check(new String[]{"-D", "x=1", "-p", "80", "-p", "81"});
+        assertThat(report.isValid()).isTrue();
+        assertThat(seen).containsExactly("X=1");
+        assertThat(report.match().getInts("port")).containsExactly(80, 81);
+    }
+
+    @Test
+    void testCheckLazyMatchDoesNotResolveAgain() {
+        AtomicInteger calls = new AtomicInteger();
+        Argumentz argumentz = Argumentz.builder()
+                .withParam('p', "port", "port for server to listen", s -> {
+                    calls.incrementAndGet();
+                    return Integer.parseInt(s);
+                })
+                .withLazyEvaluation()
+                .build();
+
+        Argumentz.Report report = argumentz.check(new String[]{"-p", "80"});
+
+        assertThat(report.match().getInt("port")).isEqualTo(80);
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testCheckReportsProblemsOfSubcommand() {
+        Argumentz argumentz = makeCommandArgumentz(new AtomicInteger());
+
+        Argumentz.Report report = argumentz.check(new String[]{"-v", "commit", "--bogus"});
+
+        assertThat(report.isValid()).isFalse();
+        assertThat(report.problems()).extracting(Argumentz.Problem::message).containsExactly(
+                "Unknown option: \"--bogus\"",
+                "Missing required parameter: \"-m\" / \"--message\"");
+
+        report = argumentz.check(new String[]{"deploy", "push"});
+        assertThat(report.problems()).extracting(Argumentz.Problem::message)
+                .containsExactly("Unknown command: \"deploy\"");
+    }
+
+    @Test
+    void testValidateReturnsPresentOptions() {
+        AtomicInteger calls = new AtomicInteger();
+        Argumentz argumentz = Argumentz.builder()
+                .withParam('u', "user", "username to connect to the server", () -> {
+                    calls.incrementAndGet();
+                    return "guest";
+                })
+                .withParam('p', "port", "port for server to listen", s -> {
+                    calls.incrementAndGet();
+                    return Integer.parseInt(s);
+                }, () -> 8080)
+                .withIntParam('s', "seconds", "timeout in seconds")
+                .withParam('h', "host", "host for client to connect to")
+                .withFlag('v', "verbose", "enable extra logging")
+                .withErrorHandler((e, a) -> calls.incrementAndGet())
+                .build();
+
+        BitSet present = argumentz.validate(new String[]{"-p", "not-a-port", "--seconds", "10", "-h", "x", "-v"});
+
+        assertThat(present).isEqualTo(BitSet.valueOf(new long[]{0b11110}));
+        assertThat(argumentz.validate(new String[]{"-s", "10", "-h", "x"})).isEqualTo(BitSet.valueOf(new long[]{0b01100}));
+        assertThat(calls.get()).isZero();
+    }
+
+    @Test
+    void testValidateRejectsMalformedCommandLine() {
+        Argumentz argumentz = makeArgumentz();
+
+        assertThat(argumentz.validate(new String[]{"-s", "10"})).isNull();
+        assertThat(argumentz.validate(new String[]{"-s", "10", "-h"})).isNull();
+        assertThat(argumentz.validate(new String[]{"-s", "10", "-h", "x", "extra"})).isNull();
+        assertThat(argumentz.validate(new String[]{"-s", "10", "-h", "x"})).isNotNull();
+    }
+
+    @Test
+    void testValidateChecksSubcommand() {
+        AtomicInteger built = new AtomicInteger();
+        Argumentz argumentz = makeCommandArgumentz(built);
+
+        assertThat(argumentz.validate(new String[]{"-v", "commit", "-m", "message"}))
+                .isEqualTo(BitSet.valueOf(new long[]{0b101}));
+        assertThat(argumentz.validate(new String[]{"-C", "repo", "commit", "-a", "-m", "message"}))
+                .isEqualTo(BitSet.valueOf(new long[]{0b1110}));
+        assertThat(argumentz.validate(new String[]{"push"})).isEqualTo(new BitSet());
+        assertThat(argumentz.validate(new String[]{"-v", "commit"})).isNull();
+        assertThat(argumentz.validate(new String[]{"-v", "deploy"})).isNull();
+    }
+
+    private static Argumentz makeAbbreviatedArgumentz() {
+        return Argumentz.builder()
+                .withParam('p', "port", "port for server to listen", Integer::parseInt, () -> 8080)
+                .withRepeatableIntParam('P', "ports", "more ports to listen")
+                .withFlag('v', "verbose", "enable extra logging")
+                .withFlag('V', "version", "print version: and exit")
+                .withParam('h', "host", "host for client to connect to", () -> "localhost")
+                .withAbbreviations()
+                .build();
+    }
+
+    @Test
+    void testUniquePrefixIsAccepted() {
+        Argumentz argumentz = makeAbbreviatedArgumentz();
+
+        Argumentz.Match match = argumentz.match(new String[]{"--verb", "--ho", "example.com", "--port", "80"});
+
+        assertThat(match.getFlag("verbose")).isTrue();
+        assertThat(match.getFlag("version")).isFalse();
+        assertThat(match.get("host")).isEqualTo("example.com");
+        assertThat(match.getInt("port")).isEqualTo(80);
+        assertThat(argumentz.validate(new String[]{"--vers"})).isEqualTo(BitSet.valueOf(new long[]{0b1000}));
+    }
+
+    @Test
+    void testAmbiguousPrefixIsRejected() {
+        Argumentz argumentz = makeAbbreviatedArgumentz();
+
+        assertThatThrownBy(() -> argumentz.match(new String[]{"--ver"}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Ambiguous option: \"--ver\" matches \"--verbose\", \"--version\"");
+        assertThat(argumentz.check(new String[]{"--po", "1"}).problems())
+                .extracting(Argumentz.Problem::kind)
+                .containsExactly(Argumentz.Problem.Kind.AMBIGUOUS, Argumentz.Problem.Kind.UNKNOWN);
+        assertThat(argumentz.validate(new String[]{"--ver"})).isNull();
+    }
+
+    @Test
+    void testPrefixIsUnknownWithoutAbbreviations() {
+        Argumentz argumentz = makeArgumentz();
+
+        Argumentz.Match match = argumentz.match(new String[]{"-s", "10", "-h", "x", "--verb"});
+
+        assertThat(match.getFlag("verbose")).isFalse();
+    }
+
+    @Test
+    void testCompletion() {
+        Argumentz argumentz = makeAbbreviatedArgumentz();
+
+        assertThat(argumentz.complete("--ver")).containsExactly("--verbose", "--version");
+        assertThat(argumentz.complete("--p")).containsExactly("--port", "--ports");
+        assertThat(argumentz.complete("-")).hasSize(10);
+        assertThat(argumentz.complete("--x")).isEmpty();
+        assertThat(makeCommandArgumentz(new AtomicInteger()).complete("c")).containsExactly("commit");
+    }
+
+    @Test
+    void testCompletionScripts() {
+        Argumentz argumentz = makeAbbreviatedArgumentz();
+
+        assertThat(argumentz.completionScript(Argumentz.Shell.BASH, "my-server")).isEqualTo(
+                "_my_server() {\n" +
+                "    local cur=\"${COMP_WORDS[COMP_CWORD]}\"\n" +
+                "    COMPREPLY=( $(compgen -W \"--host --port --ports --verbose --version -P -V -h -p -v\" -- \"$cur\") )\n" +
+                "}\n" +
+                "complete -F _my_server my-server\n");
+        assertThat(argumentz.completionScript(Argumentz.Shell.ZSH, "my-server")).isEqualTo(
+                "#compdef my-server\n" +
+                "_arguments \\\n" +
+                "    '(-p --port)'{-p,--port}'[port for server to listen]:port:' \\\n" +
+                "    '*'{-P,--ports}'[more ports to listen]:ports:' \\\n" +
+                "    '(-v --verbose)'{-v,--verbose}'[enable extra logging]' \\\n" +
+                "    '(-V --version)'{-V,--version}'[print version: and exit]' \\\n" +
+                "    '(-h --host)'{-h,--host}'[host for client to connect to]:host:'\n");
+        assertThat(makeCommandArgumentz(new AtomicInteger()).completionScript(Argumentz.Shell.ZSH, "git"))
+                .endsWith(" \\\n    '1:command:(commit push)'\n");
+    }
+
+    private static Argumentz makeClusterArgumentz() {
+        return Argumentz.builder()
+                .withParam('p', "port", "port for server to listen", Integer::parseInt, () -> 8080)
+                .withParam('h', "host", "host for client to connect to", () -> "localhost")
+                .withIntParam('n', "count", "number of workers", 1)
+                .withFlag('x', "extract", "extract files")
+                .withFlag('v', "verbose", "enable extra logging")
+                .withFlag('f', "force", "overwrite files")
+                .build();
+    }
+
+    @Test
+    void testNameEqualsValue() {
+        Argumentz argumentz = makeClusterArgumentz();
+
+        Argumentz.Match match = argumentz.match(new String[]{"--port=9000", "--host=a=b"});
+
+        assertThat(match.getInt("port")).isEqualTo(9000);
+        assertThat(match.get("host")).isEqualTo("a=b");
+        assertThatThrownBy(() -> argumentz.match(new String[]{"--count="}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Failed to resolve parameter: \"-n\" / \"--count\": For input string: \"\"");
+        assertThat(argumentz.match("--port=80 --verbose").getInt("port")).isEqualTo(80);
+    }
+
+    @Test
+    void testShortNameWithValue() {
+        Argumentz argumentz = makeClusterArgumentz();
+
+        Argumentz.Match match = argumentz.match(new String[]{"-p9000", "-hexample.com", "-n4"});
+
+        assertThat(match.getInt("port")).isEqualTo(9000);
+        assertThat(match.get("host")).isEqualTo("example.com");
+        assertThat(match.getIntValue("count")).isEqualTo(4);
+    }
+
+    @Test
+    void testClusteredShortNames() {
+        Argumentz argumentz = makeClusterArgumentz();
+
+        Argumentz.Match match = argumentz.match(new String[]{"-xvf", "-vp9000"});
+        assertThat(match.getFlag("extract")).isTrue();
+        assertThat(match.getFlag("verbose")).isTrue();
+        assertThat(match.getFlag("force")).isTrue();
+        assertThat(match.getInt("port")).isEqualTo(9000);
+
+        match = argumentz.match("-fh 'my host' -xn 3");
+        assertThat(match.getFlag("force")).isTrue();
+        assertThat(match.get("host")).isEqualTo("my host");
+        assertThat(match.getFlag("extract")).isTrue();
+        assertThat(match.getIntValue("count")).isEqualTo(3);
+        assertThat(match.getFlag("verbose")).isFalse();
+    }
+
+    @Test
+    void testTokensThatDoNotSplitAreUnknown() {
+        Argumentz argumentz = makeClusterArgumentz();
+
+        Argumentz.Match match = argumentz.match(new String[]{"-xq", "--verbose=true", "--bogus=1", "-h", "-xv"});
+
+        assertThat(match.getFlag("extract")).isFalse();
+        assertThat(match.getFlag("verbose")).isFalse();
+        assertThat(match.get("host")).isEqualTo("-xv");
+        assertThat(argumentz.check(new String[]{"-xq", "--verbose=true"}).problems())
+                .extracting(Argumentz.Problem::message)
+                .containsExactly("Unknown option: \"-xq\"", "Unknown option: \"--verbose=true\"");
+        assertThat(argumentz.validate(new String[]{"-xvp", "80"})).isEqualTo(BitSet.valueOf(new long[]{0b11001}));
+    }
+
+    @Test
+    void testAbbreviatedNameEqualsValue() {
+        Argumentz argumentz = makeAbbreviatedArgumentz();
+
+        assertThat(argumentz.match(new String[]{"--ho=example.com"}).get("host")).isEqualTo("example.com");
+        assertThatThrownBy(() -> argumentz.match(new String[]{"--po=80"}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Ambiguous option: \"--po\" matches \"--port\", \"--ports\"");
+    }
+
+    @Test
+    void testMutableMatchIsReused() {
+        Argumentz argumentz = makeArgumentz();
+        Argumentz.MutableMatch reused = argumentz.newMatch();
+
+        Argumentz.Match first = argumentz.match(new String[]{"-s", "10", "-h", "a", "-v"}, reused);
+        assertThat(first).isSameAs(reused);
+        assertThat(first.getInt("seconds")).isEqualTo(10);
+        assertThat(first.getFlag("verbose")).isTrue();
+        Map<String, Object> all = first.all();
+
+        Argumentz.Match second = argumentz.match(new String[]{"-s", "20", "-h", "b", "-u", "admin"}, reused);
+        assertThat(second).isSameAs(reused);
+        assertThat(second.getInt("seconds")).isEqualTo(20);
+        assertThat(second.get("user")).isEqualTo("admin");
+        assertThat(second.getFlag("verbose")).isFalse();
+        assertThat(second.all()).isSameAs(all);
+        assertThat(all).contains(entry("--host", "b"), entry("-v", false));
+    }
+
+    @Test
+    void testMutableMatchOfAnotherInstanceIsRejected() {
+        Argumentz.MutableMatch foreign = makeArgumentz().newMatch();
+
+        assertThatThrownBy(() -> makeArgumentz().match(new String[0], foreign))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Match was not created by this instance.");
+    }
+
+    @Test
+    void testAllIsReadOnlyView() {
+        Argumentz argumentz = makeCommandArgumentz(new AtomicInteger());
+        Argumentz.Match match = argumentz.match(new String[]{"-v", "commit", "-m", "fix"}).getCommandMatch();
+
+        Map<String, Object> all = match.all();
+
+        assertThat(all).hasSize(8);
+        assertThat(all.get("--message")).isEqualTo("fix");
+        assertThat(all.get("-v")).isEqualTo(true);
+        assertThat(all.containsKey("--dir")).isTrue();
+        assertThat(all.containsKey("--bogus")).isFalse();
+        assertThat(all).isEqualTo(new HashMap<>(all));
+        assertThatThrownBy(() -> all.put("--message", "other"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> all.entrySet().iterator().remove())
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void testMatchIsSerializedWithoutRunningMappersAgain() {
+        AtomicInteger calls = new AtomicInteger();
+        Argumentz argumentz = Argumentz.builder()
+                .withParam('u', "user", "username to connect to the server", () -> "guest")
+                .withParam('p', "port", "port for server to listen", s -> {
+                    calls.incrementAndGet();
+                    return Integer.parseInt(s);
+                }, () -> 8080)
+                .withParam('k', "key", "key file", File::new)
+                .withLongParam('l', "limit", "limit in bytes", -1L)
+                .withDoubleParam('r', "ratio", "sampling ratio")
+                .withRepeatableIntParam('P', "ports", "more ports to listen")
+                .withRepeatableParam('t', "tag", "tags", String::trim)
+                .withFlag('v', "verbose", "enable extra logging")
+                .withCodec(File.class, new Argumentz.Codec<File>() {
+                    @Override
+                    public void write(File value, DataOutput out) throws IOException {
+                        out.writeUTF(value.getPath());
+                    }
+
+                    @Override
+                    public File read(DataInput in) throws IOException {
+                        return new File(in.readUTF());
+                    }
+                })
+                .build();
+        Argumentz.Match match = argumentz.match(new String[]{
+                "-p", "9000", "-k", "/etc/key.pem", "-r", "0.25", "-P", "1", "-P", "-2", "-t", "a", "-v"});
+
+        byte[] data = argumentz.serialize(match);
+        Argumentz.Match loaded = argumentz.deserialize(data);
+
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(loaded.all().keySet()).isEqualTo(match.all().keySet());
+        assertThat(loaded.getInt("port")).isEqualTo(9000);
+        assertThat(loaded.getAs(File.class, "key")).isEqualTo(new File("/etc/key.pem"));
+        assertThat(loaded.getLongValue("limit")).isEqualTo(-1L);
+        assertThat(loaded.getDoubleValue("ratio")).isEqualTo(0.25);
+        assertThat(loaded.getInts("ports")).containsExactly(1, -2);
+        assertThat(loaded.getAll(String.class, "tag")).containsExactly("a");
+        assertThat(loaded.getFlag("verbose")).isTrue();
+        assertThat(data.length).isLessThan(64);
+    }
+
+    @Test
+    void testSerializedSubcommandMatch() {
+        Argumentz argumentz = makeCommandArgumentz(new AtomicInteger());
+        Argumentz.Match match = argumentz.match(new String[]{"-v", "commit", "-m", "fix", "-a"});
+
+        Argumentz.Match loaded = argumentz.deserialize(ByteBuffer.wrap(argumentz.serialize(match)));
+
+        assertThat(loaded.getCommand()).isEqualTo("commit");
+        assertThat(loaded.getCommandMatch().get("message")).isEqualTo("fix");
+        assertThat(loaded.getCommandMatch().getFlag("all")).isTrue();
+        assertThat(loaded.getCommandMatch().getFlag("verbose")).isTrue();
+    }
+
+    @Test
+    void testSerializedMatchOfBatch() {
+        Argumentz argumentz = makeCommandArgumentz(new AtomicInteger());
+        List<Argumentz.Result> results = argumentz.matchAll(Collections.singletonList(
+                new String[]{"-v", "commit", "-m", "fix"}));
+
+        Argumentz.Match loaded = argumentz.deserialize(argumentz.serialize(results.get(0).match()));
+
+        assertThat(loaded.getFlag("verbose")).isTrue();
+        assertThat(loaded.getCommand()).isEqualTo("commit");
+        assertThat(loaded.getCommandMatch().get("message")).isEqualTo("fix");
+        assertThatThrownBy(() -> makeCommandArgumentz(new AtomicInteger()).serialize(results.get(0).match()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Match was not created by this instance.");
+    }
+
+    @Test
+    void testMalformedSerializedMatchIsRejected() {
+        Argumentz argumentz = Argumentz.builder()
+                .withRepeatableIntParam('n', "number", "some number")
+                .withParam('k', "key", "key file", File::new, () -> new File("key.pem"))
+                .withCodec(File.class, new Argumentz.Codec<File>() {
+                    @Override
+                    public void write(File value, DataOutput out) throws IOException {
+                        out.writeUTF(value.getPath());
+                    }
+
+                    @Override
+                    public File read(DataInput in) throws IOException {
+                        String path = in.readUTF();
+                        if (path.isEmpty()) {
+                            throw new IllegalStateException("empty path");
+                        }
+                        return new File(path);
+                    }
+                })
+                .build();
+        byte[] data = argumentz.serialize(argumentz.match(new String[]{"-n", "1", "-n", "2"}));
+        // INTS tag, length 2 (zig-zag encoded), 1, 2, then the key and the command marker
+        int length = data.length - 15;
+        assertThat(data[length - 1]).isEqualTo((byte) 6);
+        assertThat(data[length]).isEqualTo((byte) 4);
+
+        byte[] negative = data.clone();
+        negative[length] = 3;
+        assertThatThrownBy(() -> argumentz.deserialize(negative))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Serialized match has invalid length: -2");
+
+        byte[] huge = new byte[data.length + 4];
+        System.arraycopy(data, 0, huge, 0, length);
+        System.arraycopy(new byte[]{(byte) 0xFE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F}, 0, huge, length, 5);
+        System.arraycopy(data, length + 1, huge, length + 5, data.length - length - 1);
+        assertThatThrownBy(() -> argumentz.deserialize(huge))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Serialized match has invalid length: 2147483647");
+
+        byte[] emptyPath = data.clone();
+        emptyPath[data.length - 10] = 0;
+        emptyPath[data.length - 9] = 0;
+        assertThatThrownBy(() -> argumentz.deserialize(emptyPath))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Failed to deserialize match: empty path");
+
+        for (int i = 0; i < data.length; i++) {
+            byte[] truncated = Arrays.copyOf(data, i);
+            assertThatThrownBy(() -> argumentz.deserialize(truncated))
+                    .as("truncated to " + i)
+                    .isInstanceOf(IllegalArgumentException.class);
+            for (byte b : new byte[]{0, 3, 9, 0x7F, (byte) 0x80, (byte) 0xFF}) {
+                byte[] corrupted = data.clone();
+                corrupted[i] = b;
+                try {
+                    argumentz.deserialize(corrupted);
+                } catch (IllegalArgumentException e) {
+                    // rejected as malformed
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSerializedMatchOfAnotherSpecIsRejected() {
+        Argumentz argumentz = makeArgumentz();
+        byte[] data = argumentz.serialize(argumentz.match(new String[]{"-s", "10", "-h", "x"}));
+
+        assertThat(makeArgumentz().deserialize(data).getInt("seconds")).isEqualTo(10);
+        assertThatThrownBy(() -> makePrimitiveArgumentz().deserialize(data))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Serialized match does not fit this spec (fingerprint mismatch).");
+        assertThatThrownBy(() -> argumentz.deserialize(Arrays.copyOf(data, data.length - 1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Failed to deserialize match");
+        assertThatThrownBy(() -> argumentz.deserialize(new byte[]{1, 2, 3}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Not a serialized match, or unsupported version.");
+    }
+
+    @Test
+    void testValueWithoutCodecIsRejected() {
+        Argumentz argumentz = Argumentz.builder()
+                .withParam('k', "key", "key file", File::new)
+                .build();
+
+        assertThatThrownBy(() -> argumentz.serialize(argumentz.match(new String[]{"-k", "a"})))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("No codec for value of parameter \"--key\": java.io.File");
+    }
+
+    interface ServerConfig {
+        String user();
+
+        int getPort();
+
+        Integer seconds();
+
+        String host();
+
+        boolean isVerbose();
+    }
+
+    interface PrimitiveConfig {
+        int port();
+
+        long size();
+
+        double ratio();
+    }
+
+    interface CommitConfig {
+        String message();
+
+        boolean all();
+
+        boolean verbose();
+    }
+
+    @Test
+    void testBoundMatch() {
+        String[] args = {"-u", "admin", "-s", "3600", "-h", "localhost", "-v"};
+        ServerConfig config = makeArgumentz().match(args).bind(ServerConfig.class);
+
+        assertThat(config.user()).isEqualTo("admin");
+        assertThat(config.getPort()).isEqualTo(8080);
+        assertThat(config.seconds()).isEqualTo(3600);
+        assertThat(config.host()).isEqualTo("localhost");
+        assertThat(config.isVerbose()).isTrue();
+        assertThat(config).isEqualTo(config).isNotEqualTo(makeArgumentz().match(args).bind(ServerConfig.class));
+        assertThat(config.toString()).startsWith("ServerConfig{").contains("host=localhost");
+    }
+
+    @Test
+    void testBoundPrimitiveMatch() {
+        PrimitiveConfig config = makePrimitiveArgumentz().match(new String[]{"--size", "4294967296"})
+                .bind(PrimitiveConfig.class);
+
+        assertThat(config.port()).isEqualTo(8080);
+        assertThat(config.size()).isEqualTo(4294967296L);
+        assertThat(config.ratio()).isEqualTo(0.5);
+    }
+
+    @Test
+    void testBoundSubcommandMatchFallsBackToParent() {
+        Argumentz.Match match = makeCommandArgumentz(new AtomicInteger())
+                .match(new String[]{"-v", "commit", "-m", "fix"});
+        CommitConfig config = match.getCommandMatch().bind(CommitConfig.class);
+
+        assertThat(config.message()).isEqualTo("fix");
+        assertThat(config.all()).isFalse();
+        assertThat(config.verbose()).isTrue();
+    }
+
+    interface WrongTypeConfig {
+        long port();
+    }
+
+    interface UnknownConfig {
+        String password();
+    }
+
+    interface NullPrimitiveConfig {
+        int seconds();
+    }
+
+    interface DefaultMethodConfig {
+        int port();
+
+        default int twice() {
+            return port() * 2;
+        }
+    }
+
+    @Test
+    void testBindReportsMismatchesUpFront() {
+        Argumentz.Match match = makeArgumentz().match(new String[]{"-s", "10", "-h", "localhost"});
+
+        assertThatThrownBy(() -> match.bind(WrongTypeConfig.class))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("does not fit value of \"--port\" of java.lang.Integer");
+        assertThatThrownBy(() -> match.bind(UnknownConfig.class))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("No option for method")
+                .hasMessageEndingWith("[password]");
+        Argumentz.Match empty = Argumentz.builder()
+                .withParam('s', "seconds", "timeout in seconds", s -> s.isEmpty() ? null : Integer.parseInt(s))
+                .build()
+                .match(new String[]{"-s", ""});
+        assertThatThrownBy(() -> empty.bind(NullPrimitiveConfig.class))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("cannot return null value of \"--seconds\"");
+        assertThatThrownBy(() -> match.bind(String.class))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Only interfaces can be bound: java.lang.String");
+        assertThatThrownBy(() -> match.bind(DefaultMethodConfig.class))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Default methods cannot be bound: ")
+                .hasMessageContaining("twice()");
+    }
+
+    interface KebabConfig {
+        int maxConns();
+    }
+
+    @Test
+    void testBindMapsCamelCaseToKebabCase() {
+        Argumentz argumentz = Argumentz.builder()
+                .withIntParam('m', "max-conns", "connection limit", 16)
+                .build();
+
+        assertThat(argumentz.match(new String[]{"--max-conns", "64"}).bind(KebabConfig.class).maxConns())
+                .isEqualTo(64);
+    }
+
+    private static Argumentz makeLayeredArgumentz() {
+        return Argumentz.builder()
+                .withParam('u', "user", "username to connect to the server", () -> "guest")
+                .withParam('P', "path", "search path", () -> "none")
+                .withIntParam('p', "port", "port for server to listen")
+                .withParam('h', "host", "host for client to connect to", () -> "localhost")
+                .withFlag('v', "verbose", "enable extra logging")
+                .withSystemProperties("argumentz.test.")
+                .withEnvironment(name -> name.equals("path") || name.equals("user") ? name.toUpperCase() : null)
+                .build();
+    }
+
+    @Test
+    void testLayeredValues() {
+        System.setProperty("argumentz.test.user", "admin");
+        System.setProperty("argumentz.test.port", "9000");
+        System.setProperty("argumentz.test.verbose", "TRUE");
+        Argumentz argumentz;
+        try {
+            argumentz = makeLayeredArgumentz();
+        } finally {
+            System.clearProperty("argumentz.test.user");
+            System.clearProperty("argumentz.test.port");
+            System.clearProperty("argumentz.test.verbose");
+        }
+        assertThat(System.getenv("PATH")).isNotNull();
+
+        Argumentz.Match match = argumentz.match(new String[0]);
+        assertThat(match.get("user")).isEqualTo("admin");
+        assertThat(match.source("user")).isEqualTo(Argumentz.Source.PROPERTY);
+        assertThat(match.get("path")).isEqualTo(System.getenv("PATH"));
+        assertThat(match.source("path")).isEqualTo(Argumentz.Source.ENVIRONMENT);
+        assertThat(match.getIntValue("port")).isEqualTo(9000);
+        assertThat(match.getFlag("verbose")).isTrue();
+        assertThat(match.get("host")).isEqualTo("localhost");
+        assertThat(match.source("host")).isEqualTo(Argumentz.Source.DEFAULT);
+        assertThat(match.source("unknown")).isNull();
+
+        match = argumentz.match(new String[]{"-u", "root", "-h", "example.com", "--port", "9001"});
+        assertThat(match.get("user")).isEqualTo("root");
+        assertThat(match.source("user")).isEqualTo(Argumentz.Source.COMMAND_LINE);
+        assertThat(match.get("host")).isEqualTo("example.com");
+        assertThat(match.getIntValue("port")).isEqualTo(9001);
+
+        assertThat(argumentz.validate(new String[0]).isEmpty()).isTrue();
+        assertThat(argumentz.check(new String[0]).isValid()).isTrue();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        argumentz.printUsage(new PrintStream(out));
+        assertThat(out.toString())
+                .containsPattern("--port .*\\(required\\) \\[from property argumentz.test.port]")
+                .containsPattern("--path .*\\[from env PATH]")
+                .doesNotContain("[from property argumentz.test.host]");
+    }
+
+    @Test
+    void testInvalidLayeredValues() {
+        System.setProperty("argumentz.test.port", "PORT");
+        System.setProperty("argumentz.test.verbose", "maybe");
+        Argumentz argumentz;
+        try {
+            argumentz = makeLayeredArgumentz();
+        } finally {
+            System.clearProperty("argumentz.test.port");
+            System.clearProperty("argumentz.test.verbose");
+        }
+
+        assertThatThrownBy(() -> argumentz.match(new String[0]))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Failed to resolve parameter: \"-p\" / \"--port\": For input string: \"PORT\"" +
+                        " (at property argumentz.test.port)");
+        assertThatThrownBy(() -> argumentz.match(new String[]{"-p", "1"}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Failed to resolve flag: \"-v\" / \"--verbose\": expected true or false, got \"maybe\"" +
+                        " (at property argumentz.test.verbose)");
+        assertThat(argumentz.check(new String[0]).problems())
+                .extracting(Argumentz.Problem::kind)
+                .containsExactly(Argumentz.Problem.Kind.INVALID, Argumentz.Problem.Kind.INVALID);
+    }
+
+    @Test
+    void testLayeredValuesAreTakenOnce() {
+        Argumentz argumentz = makeLayeredArgumentz();
+        System.setProperty("argumentz.test.port", "9000");
+        try {
+            assertThat(argumentz.validate(new String[0])).isNull();
+            assertThatThrownBy(() -> argumentz.match(new String[0]))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Missing required parameter: \"-p\" / \"--port\"");
+        } finally {
+            System.clearProperty("argumentz.test.port");
+        }
+    }
 }
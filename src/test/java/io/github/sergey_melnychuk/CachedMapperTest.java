@@ -0,0 +1,139 @@
+package io.github.sergey_melnychuk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class CachedMapperTest {
+
+    @Test
+    void testResultsAreSharedAcrossMatches() {
+        AtomicInteger calls = new AtomicInteger();
+        CachedMapper<Integer> port = CachedMapper.of(s -> {
+            calls.incrementAndGet();
+            return Integer.parseInt(s);
+        }, 16);
+        Argumentz argumentz = Argumentz.builder()
+                .withParam('p', "port", "port for server to listen", port, () -> 8080)
+                .build();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(argumentz.match(new String[]{"-p", "80"}).getInt("port")).isEqualTo(80);
+        }
+        assertThat(argumentz.match(new String[]{"-p", "443"}).getInt("port")).isEqualTo(443);
+
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(port.hits()).isEqualTo(9);
+        assertThat(port.misses()).isEqualTo(2);
+        assertThat(port.size()).isEqualTo(2);
+    }
+
+    @Test
+    void testFailuresAreNotCached() {
+        AtomicInteger calls = new AtomicInteger();
+        Argumentz argumentz = Argumentz.builder()
+                .withCachedParam('p', "port", "port for server to listen", s -> {
+                    calls.incrementAndGet();
+                    return Integer.parseInt(s);
+                }, 16)
+                .build();
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> argumentz.match(new String[]{"-p", "http"}))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Failed to resolve parameter: \"-p\" / \"--port\": For input string: \"http\"");
+        }
+        assertThat(calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        CachedMapper<String> mapper = CachedMapper.of(Function.identity(), 2);
+
+        mapper.apply("a");
+        mapper.apply("b");
+        mapper.apply("a");
+        mapper.apply("c");
+        mapper.apply("a");
+        mapper.apply("b");
+
+        assertThat(mapper.hits()).isEqualTo(2);
+        assertThat(mapper.misses()).isEqualTo(4);
+        assertThat(mapper.evictions()).isEqualTo(2);
+        assertThat(mapper.size()).isEqualTo(2);
+    }
+
+    @Test
+    void testConcurrentUseStaysWithinSize() throws Exception {
+        CachedMapper<Integer> mapper = CachedMapper.of(Integer::parseInt, 8);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        int n = (i * 31 + seed) % 16;
+                        assertThat(mapper.apply(String.valueOf(n))).isEqualTo(n);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(mapper.size()).isLessThanOrEqualTo(8);
+        assertThat(mapper.hits() + mapper.misses()).isEqualTo(40_000);
+        assertThat(mapper.evictions()).isLessThanOrEqualTo(mapper.misses() - mapper.size());
+    }
+
+    @Test
+    void testMissCostDoesNotGrowWithSize() {
+        long small = nanosPerMissWhenFull(1_000);
+        long large = nanosPerMissWhenFull(100_000);
+        small = Math.min(small, nanosPerMissWhenFull(1_000));
+
+        // a scan of the whole cache per miss would make this about 100 times slower
+        assertThat(large).isLessThan(Math.max(small, 100) * 10);
+    }
+
+    private static long nanosPerMissWhenFull(int maxSize) {
+        CachedMapper<String> mapper = CachedMapper.of(Function.identity(), maxSize);
+        for (int i = 0; i < maxSize; i++) {
+            mapper.apply("fill-" + i);
+        }
+        int misses = 200_000;
+        String[] inputs = new String[misses];
+        for (int i = 0; i < misses; i++) {
+            inputs[i] = "miss-" + i;
+        }
+        long start = System.nanoTime();
+        for (String input : inputs) {
+            mapper.apply(input);
+        }
+        long nanos = System.nanoTime() - start;
+
+        assertThat(mapper.size()).isEqualTo(maxSize);
+        assertThat(mapper.evictions()).isEqualTo(misses);
+        return nanos / misses;
+    }
+
+    @Test
+    void testSizeMustBePositive() {
+        assertThatThrownBy(() -> CachedMapper.of(Function.identity(), 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Cache size must be positive: 0");
+    }
+}
@@ -0,0 +1,153 @@
+package io.github.sergey_melnychuk;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class ConvertersTest {
+
+    enum Mode {
+        READ_ONLY, READ_WRITE
+    }
+
+    @Test
+    void testInts() {
+        for (String text : new String[]{"0", "-0", "+7", "42", "-42", "007", "2147483647", "-2147483648"}) {
+            assertThat(Converters.INT.convert(text).value()).isEqualTo(Integer.parseInt(text));
+        }
+        for (String text : new String[]{"", "-", "+", "1a", " 1", "2147483648", "-2147483649", "99999999999"}) {
+            assertThat(Converters.INT.convert(text).error()).isEqualTo("Invalid int: \"" + text + "\"");
+        }
+    }
+
+    @Test
+    void testLongs() {
+        for (String text : new String[]{"0", "-1", "4294967296", "9223372036854775807", "-9223372036854775808"}) {
+            assertThat(Converters.LONG.convert(text).value()).isEqualTo(Long.parseLong(text));
+        }
+        for (String text : new String[]{"", "1.0", "9223372036854775808", "-9223372036854775809"}) {
+            assertThat(Converters.LONG.convert(text).isValid()).isFalse();
+        }
+    }
+
+    @Test
+    void testRangesAreConvertedInPlace() {
+        assertThat(Converters.INT.convert("--port=8080", 7, 11).value()).isEqualTo(8080);
+        assertThat(Converters.DOUBLE.convert("-r0.25", 2, 6).value()).isEqualTo(0.25);
+        assertThat(Converters.INT.convert("--port=http", 7, 11).error()).isEqualTo("Invalid int: \"http\"");
+    }
+
+    @Test
+    void testDoubles() {
+        String[] valid = {"0", "-0.0", "1", "1.", ".5", "0.1", "3.14159", "-2.5e-3", "1E10", "1e+22", "1e23",
+                "123456789012345678901234567890", "0.000000000000000000000000000001", "4.9e-324", "1e-400",
+                "1.7976931348623157e308", "1e309", "9007199254740993", "NaN", "-Infinity", "Infinity"};
+        for (String text : valid) {
+            assertThat(Converters.DOUBLE.convert(text).value()).as(text).isEqualTo(Double.parseDouble(text));
+        }
+        for (String text : new String[]{"", ".", "-", "e5", "1e", "1e+", "1.2.3", "0x1p3", "1d", " 1", "--1"}) {
+            assertThat(Converters.DOUBLE.convert(text).error()).isEqualTo("Invalid double: \"" + text + "\"");
+        }
+    }
+
+    @Test
+    void testDoublesAreRoundedCorrectly() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            String text = random.nextInt(1_000_000) + "." + random.nextInt(1_000_000) + "e" + (random.nextInt(40) - 20);
+            assertThat(Converters.DOUBLE.convert(text).value()).as(text).isEqualTo(Double.parseDouble(text));
+            text = Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+            assertThat(Converters.DOUBLE.convert(text).value()).as(text).isEqualTo(Double.parseDouble(text));
+        }
+    }
+
+    @Test
+    void testBooleans() {
+        assertThat(Converters.BOOLEAN.convert("true").value()).isTrue();
+        assertThat(Converters.BOOLEAN.convert("FALSE").value()).isFalse();
+        assertThat(Converters.BOOLEAN.convert("yes").error()).isEqualTo("Invalid boolean: \"yes\"");
+    }
+
+    @Test
+    void testEnums() {
+        Converter<Mode> mode = Converters.enumOf(Mode.class);
+
+        assertThat(mode.convert("READ_ONLY").value()).isEqualTo(Mode.READ_ONLY);
+        assertThat(mode.convert("read-write").value()).isEqualTo(Mode.READ_WRITE);
+        assertThat(mode.convert("read").error()).isEqualTo("Invalid Mode: \"read\"");
+    }
+
+    @Test
+    void testDurations() {
+        assertThat(Converters.DURATION.convert("250ms").value()).isEqualTo(Duration.ofMillis(250));
+        assertThat(Converters.DURATION.convert("5m").value()).isEqualTo(Duration.ofMinutes(5));
+        assertThat(Converters.DURATION.convert("1h30m").value()).isEqualTo(Duration.ofMinutes(90));
+        assertThat(Converters.DURATION.convert("2d").value()).isEqualTo(Duration.ofDays(2));
+        assertThat(Converters.DURATION.convert("10us").value()).isEqualTo(Duration.ofNanos(10_000));
+        assertThat(Converters.DURATION.convert("15ns").value()).isEqualTo(Duration.ofNanos(15));
+        assertThat(Converters.DURATION.convert("3s").value().toNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(3));
+        for (String text : new String[]{"", "5", "ms", "5M", "5 m", "1.5s", "5w", "9999999999999999999d"}) {
+            assertThat(Converters.DURATION.convert(text).error()).isEqualTo("Invalid duration: \"" + text + "\"");
+        }
+    }
+
+    @Test
+    void testSizes() {
+        assertThat(Converters.SIZE.convert("512").value()).isEqualTo(512L);
+        assertThat(Converters.SIZE.convert("512b").value()).isEqualTo(512L);
+        assertThat(Converters.SIZE.convert("64m").value()).isEqualTo(64L << 20);
+        assertThat(Converters.SIZE.convert("2GB").value()).isEqualTo(2L << 30);
+        assertThat(Converters.SIZE.convert("16KiB").value()).isEqualTo(16L << 10);
+        assertThat(Converters.SIZE.convert("1t").value()).isEqualTo(1L << 40);
+        for (String text : new String[]{"", "k", "-1", "1.5g", "16Ki", "1x", "1kbb", "8192p"}) {
+            assertThat(Converters.SIZE.convert(text).error()).isEqualTo("Invalid size: \"" + text + "\"");
+        }
+    }
+
+    @Test
+    void testHostPorts() {
+        assertThat(Converters.HOST_PORT.convert("localhost:8080").value())
+                .isEqualTo(InetSocketAddress.createUnresolved("localhost", 8080));
+        assertThat(Converters.HOST_PORT.convert("[::1]:443").value())
+                .isEqualTo(InetSocketAddress.createUnresolved("::1", 443));
+        assertThat(Converters.HOST_PORT.convert("10.0.0.1:0").value().isUnresolved()).isTrue();
+        for (String text : new String[]{"", "localhost", ":80", "host:", "host:http", "host:65536", "::1:80",
+                "[::1]", "[::1]80", "[]:80", "my host:80", "host:123456"}) {
+            assertThat(Converters.HOST_PORT.convert(text).error()).isEqualTo("Invalid host:port: \"" + text + "\"");
+        }
+    }
+
+    @Test
+    void testApplyThrowsOnInvalidInput() {
+        assertThat(Converters.INT.apply("42")).isEqualTo(42);
+        assertThatThrownBy(() -> Converters.INT.apply("x"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid int: \"x\"")
+                .hasNoCause();
+    }
+
+    @Test
+    void testConvertersAsMappers() {
+        Argumentz argumentz = Argumentz.builder()
+                .withParam('t', "timeout", "request timeout", Converters.DURATION, () -> Duration.ofSeconds(5))
+                .withParam('c', "connect", "address to connect to", Converters.HOST_PORT)
+                .build();
+
+        Argumentz.Match match = argumentz.match(new String[]{"-c", "example.com:443", "--timeout", "250ms"});
+        assertThat(match.getAs(Duration.class, "timeout")).isEqualTo(Duration.ofMillis(250));
+        assertThat(match.getAs(InetSocketAddress.class, "connect").getPort()).isEqualTo(443);
+
+        assertThatThrownBy(() -> argumentz.match(new String[]{"-c", "example.com"}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Failed to resolve parameter: \"-c\" / \"--connect\": Invalid host:port: \"example.com\"")
+                .hasNoCause();
+        assertThat(argumentz.check(new String[]{"-c", "x:1", "-t", "5"}).problems())
+                .extracting(Argumentz.Problem::message)
+                .containsExactly("Failed to resolve parameter: \"-t\" / \"--timeout\": Invalid duration: \"5\"");
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.sergey_melnychuk;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class KeyTableTest {
+
+    @Test
+    void testLookupByRange() {
+        Map<String, Integer> entries = new HashMap<>();
+        entries.put("-p", 1);
+        entries.put("--port", 2);
+        entries.put("--portal", 3);
+        KeyTable<Integer> table = new KeyTable<>(entries);
+
+        assertThat(table.get("-p")).isEqualTo(1);
+        assertThat(table.get("--port")).isEqualTo(2);
+        assertThat(table.get("xx --portal yy", 3, 11)).isEqualTo(3);
+        assertThat(table.get(new StringBuilder("--port 80"), 0, 6)).isEqualTo(2);
+        assertThat(table.get("--por")).isNull();
+        assertThat(table.get("")).isNull();
+    }
+
+    @Test
+    void testManyKeys() {
+        Map<String, Integer> entries = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            entries.put("--opt" + i, i);
+        }
+        KeyTable<Integer> table = new KeyTable<>(entries);
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(table.get("--opt" + i)).isEqualTo(i);
+        }
+        assertThat(table.get("--opt10000")).isNull();
+    }
+
+    @Test
+    void testEmpty() {
+        assertThat(new KeyTable<>(new HashMap<String, Object>()).get("-x")).isNull();
+    }
+}
@@ -0,0 +1,48 @@
+package io.github.sergey_melnychuk;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class MatchStatsTest {
+
+    @Test
+    void testStatsAreCollected() {
+        MatchStats stats = new MatchStats();
+        Argumentz argumentz = Argumentz.builder()
+                .withParam('u', "user", "username to connect to the server", () -> "guest")
+                .withParam('p', "port", "port for server to listen", Integer::parseInt, () -> 8080)
+                .withListener(stats)
+                .build();
+
+        argumentz.match(new String[]{"-p", "80"});
+        argumentz.match(new String[]{"-p", "81", "-u", "admin"});
+        assertThatThrownBy(() -> argumentz.match(new String[]{"-p", "http"}))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(stats.matches().count()).isEqualTo(3);
+        assertThat(stats.failedMatches()).isEqualTo(1);
+        assertThat(stats.errors()).isEqualTo(1);
+        assertThat(stats.mappers()).containsOnlyKeys("port", "user");
+        assertThat(stats.mappers().get("port").count()).isEqualTo(3);
+        assertThat(stats.defaults()).containsOnlyKeys("user");
+        assertThat(stats.defaults().get("user").count()).isEqualTo(1);
+    }
+
+    @Test
+    void testPercentilesAreBoundedByMax() {
+        MatchStats stats = new MatchStats();
+        for (int i = 1; i <= 100; i++) {
+            stats.matchFinished(i * 1000L, true);
+        }
+
+        MatchStats.Timing timing = stats.matches();
+        assertThat(timing.count()).isEqualTo(100);
+        assertThat(timing.totalNanos()).isEqualTo(5050 * 1000L);
+        assertThat(timing.maxNanos()).isEqualTo(100_000L);
+        assertThat(timing.percentileNanos(0.5)).isBetween(50_000L, 100_000L);
+        assertThat(timing.percentileNanos(1.0)).isEqualTo(100_000L);
+        assertThat(timing.percentileNanos(0.0)).isBetween(1000L, 2000L);
+        assertThat(new MatchStats().matches().percentileNanos(0.99)).isEqualTo(0L);
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.sergey_melnychuk;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class PrefixTrieTest {
+
+    @Test
+    void testUniquePrefix() {
+        Map<String, Integer> entries = new HashMap<>();
+        entries.put("--verbose", 1);
+        entries.put("--version", 2);
+        entries.put("--port", 3);
+        entries.put("--ports", 4);
+        PrefixTrie<Integer> trie = new PrefixTrie<>(entries);
+
+        assertThat(trie.unique("--verb", 0, 6)).isEqualTo(1);
+        assertThat(trie.unique("xx --versi yy", 3, 10)).isEqualTo(2);
+        assertThat(trie.unique("--ver", 0, 5)).isNull();
+        assertThat(trie.unique("--ports", 0, 7)).isEqualTo(4);
+        assertThat(trie.unique("--x", 0, 3)).isNull();
+        assertThat(trie.count("--ver", 0, 5)).isEqualTo(2);
+        assertThat(trie.count("--port", 0, 6)).isEqualTo(2);
+        assertThat(trie.count("", 0, 0)).isEqualTo(4);
+    }
+
+    @Test
+    void testKeysInOrder() {
+        Map<String, Integer> entries = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            entries.put("--opt" + i, i);
+        }
+        PrefixTrie<Integer> trie = new PrefixTrie<>(entries);
+
+        assertThat(trie.keys("--opt99")).containsExactly("--opt99", "--opt990", "--opt991", "--opt992",
+                "--opt993", "--opt994", "--opt995", "--opt996", "--opt997", "--opt998", "--opt999");
+        assertThat(trie.keys("--x")).isEmpty();
+        assertThat(trie.keys("")).hasSize(1000);
+    }
+}
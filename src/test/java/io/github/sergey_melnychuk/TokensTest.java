@@ -0,0 +1,123 @@
+package io.github.sergey_melnychuk;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class TokensTest {
+
+    private static List<String> split(String line) {
+        Deque<String> tokens = new ArrayDeque<>();
+        Tokens.split(line, tokens);
+        return new ArrayList<>(tokens);
+    }
+
+    private static List<String> drain(Tokens tokens) {
+        List<String> all = new ArrayList<>();
+        while (tokens.next()) {
+            all.add(tokens.token());
+        }
+        tokens.close();
+        return all;
+    }
+
+    private static Path write(Path dir, String name, String... lines) throws IOException {
+        return Files.write(dir.resolve(name), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testSplit() {
+        assertThat(split("  -u admin\t--port 9000 ")).containsExactly("-u", "admin", "--port", "9000");
+        assertThat(split("-m 'hello world' -n \"say \\\"hi\\\"\"")).containsExactly("-m", "hello world", "-n", "say \"hi\"");
+        assertThat(split("a\\ b '' c")).containsExactly("a b", "", "c");
+        assertThat(split("-v # trailing comment")).containsExactly("-v");
+        assertThat(split("# whole line comment")).isEmpty();
+        assertThat(split("x#y")).containsExactly("x#y");
+    }
+
+    @Test
+    void testCommandLineHasNoComments() {
+        assertThat(drain(Tokens.of("--color #fff --name bob # not a comment")))
+                .containsExactly("--color", "#fff", "--name", "bob", "#", "not", "a", "comment");
+    }
+
+    @Test
+    void testLineTokensAreRangesOfTheLine() {
+        String line = "  -p 9000 --host 'local host'\n-v";
+        Tokens tokens = Tokens.of(line);
+
+        assertThat(tokens.next()).isTrue();
+        assertThat(tokens.chars()).isSameAs(line);
+        assertThat(line.substring(tokens.start(), tokens.end())).isEqualTo("-p");
+        assertThat(tokens.next()).isTrue();
+        assertThat(tokens.token()).isEqualTo("9000");
+        assertThat(tokens.next()).isTrue();
+        assertThat(tokens.chars()).isSameAs(line);
+        assertThat(tokens.token()).isEqualTo("--host");
+        assertThat(tokens.next()).isTrue();
+        assertThat(tokens.chars()).isNotSameAs(line);
+        assertThat(tokens.token()).isEqualTo("local host");
+        assertThat(tokens.next()).isTrue();
+        assertThat(tokens.token()).isEqualTo("-v");
+        assertThat(tokens.next()).isFalse();
+    }
+
+    @Test
+    void testExpandingNestedFiles() throws IOException {
+        Path dir = Files.createTempDirectory("argumentz");
+        Path inner = write(dir, "inner.txt", "-p 9000", "", "# comment", "--host 'local host'");
+        Path outer = write(dir, "outer.txt", "-u admin", "@" + inner, "-v");
+
+        Tokens tokens = Tokens.expanding(Tokens.of(new String[]{"-a", "@" + outer, "@@literal", "-z"}));
+
+        assertThat(drain(tokens)).containsExactly(
+                "-a", "-u", "admin", "-p", "9000", "--host", "local host", "-v", "@literal", "-z");
+    }
+
+    @Test
+    void testExpandingTracksLocation() throws IOException {
+        Path dir = Files.createTempDirectory("argumentz");
+        Path file = write(dir, "args.txt", "-u admin", "", "-p 9000");
+
+        Tokens tokens = Tokens.expanding(Tokens.of(new String[]{"-v", "@" + file}));
+
+        assertThat(tokens.next()).isTrue();
+        assertThat(tokens.where()).isNull();
+        assertThat(tokens.next()).isTrue();
+        assertThat(tokens.where()).isEqualTo(file + ":1");
+        tokens.next();
+        tokens.next();
+        assertThat(tokens.token()).isEqualTo("-p");
+        assertThat(tokens.where()).isEqualTo(file + ":3");
+        tokens.close();
+    }
+
+    @Test
+    void testExpandingRecursiveFileIsDetected() throws IOException {
+        Path dir = Files.createTempDirectory("argumentz");
+        Path file = dir.resolve("self.txt");
+        write(dir, "self.txt", "-v", "@" + file);
+
+        Tokens tokens = Tokens.expanding(Tokens.of(new String[]{"@" + file}));
+
+        assertThatThrownBy(() -> drain(tokens))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Recursive argument file: \"" + file + "\" (at " + file + ":2)");
+        tokens.close();
+    }
+
+    @Test
+    void testExpandingMissingFile() {
+        Tokens tokens = Tokens.expanding(Tokens.of(new String[]{"@no-such-file.txt"}));
+
+        assertThatThrownBy(() -> drain(tokens))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Failed to read argument file: \"no-such-file.txt\": ");
+    }
+}